@@ -0,0 +1,90 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times the status-filtering streams the dashboard runs (win count, win sum,
+ * loss count) over a million trades, once with the status derived in the
+ * getter as Trade used to do and once reading the stored status.
+ *
+ * Build the application first, then from the TradingJournal directory:
+ *
+ *   javac -cp build/classes:$FX -d build/bench bench/com/tradingjournal/StatusBenchmark.java
+ *   java -XX:ActiveProcessorCount=1 -cp build/classes:build/bench:$FX com.tradingjournal.StatusBenchmark
+ *
+ * where $FX lists the JavaFX jars. Each variant reports its best of 15 runs.
+ */
+public class StatusBenchmark {
+    private static final int TRADES = 1_000_000;
+    private static final int RUNS = 15;
+
+    public static void main(String[] args) {
+        List<Trade> trades = createTrades();
+        // Warm both variants up before timing either
+        for (int i = 0; i < 5; i++) {
+            derived(trades);
+            stored(trades);
+        }
+        System.out.printf("derive in getter: %.1f ms%n", best(() -> derived(trades)));
+        System.out.printf("cached fields:    %.1f ms%n", best(() -> stored(trades)));
+    }
+
+    private static List<Trade> createTrades() {
+        Random random = new Random(42);
+        List<Trade> trades = new ArrayList<>(TRADES);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < TRADES; i++) {
+            double entry = 1 + random.nextDouble();
+            double exit = entry + (random.nextDouble() - 0.5) / 10;
+            double size = 1 + random.nextInt(10);
+            String side = random.nextBoolean() ? "LONG" : "SHORT";
+            double returns = ("LONG".equals(side) ? exit - entry : entry - exit) * size * 1000;
+            Trade trade = new Trade(null, start.plusDays(i / 100), "1h", "EURUSD", entry, exit, size, side,
+                    "Breakout", "Limit", returns, 10_000);
+            trade.setId(i + 1);
+            trades.add(trade);
+        }
+        return trades;
+    }
+
+    private static double best(Runnable run) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    private static long sink;
+
+    private static void derived(List<Trade> trades) {
+        long wins = trades.stream().filter(t -> "WIN".equals(deriveStatus(t))).count();
+        double winSum = trades.stream().filter(t -> "WIN".equals(deriveStatus(t))).mapToDouble(Trade::getReturns).sum();
+        long losses = trades.stream().filter(t -> "LOSS".equals(deriveStatus(t))).count();
+        sink += wins + losses + (long) winSum;
+    }
+
+    private static void stored(List<Trade> trades) {
+        long wins = trades.stream().filter(t -> "WIN".equals(t.getStatus())).count();
+        double winSum = trades.stream().filter(t -> "WIN".equals(t.getStatus())).mapToDouble(Trade::getReturns).sum();
+        long losses = trades.stream().filter(t -> "LOSS".equals(t.getStatus())).count();
+        sink += wins + losses + (long) winSum;
+    }
+
+    // What getStatus() did on every call before the status was stored
+    private static String deriveStatus(Trade trade) {
+        double returnPercentage = 0;
+        if (trade.getSide().equals("LONG")) {
+            returnPercentage = ((trade.getExit() - trade.getEntry()) / trade.getEntry()) * 100;
+        } else if (trade.getSide().equals("SHORT")) {
+            returnPercentage = ((trade.getEntry() - trade.getExit()) / trade.getEntry()) * 100;
+        }
+        return returnPercentage > 0 ? "WIN" : "LOSS";
+    }
+}
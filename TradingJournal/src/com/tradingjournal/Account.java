@@ -7,6 +7,8 @@ public class Account implements Serializable {
     
     private String name;
     private String id;
+    // When the account was last switched to; 0 in accounts saved before this was recorded
+    private long lastUsed;
     
    public Account(String name) {
     this.name = name;
@@ -25,6 +27,14 @@ public class Account implements Serializable {
     public String getId() {
         return id;
     }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
     
     @Override
     public String toString() {
@@ -2,6 +2,7 @@ package com.tradingjournal;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 public class AccountManager implements Serializable {
@@ -38,6 +39,19 @@ private static final String DATA_DIR = "E:\\netbeansprojects\\TradingJournal\\Tr
     public void setCurrentAccount(Account account) {
         this.currentAccount = account;
     }
+
+    // Records the switch so the next start knows which accounts to load ahead; saved with the accounts on exit
+    public void markUsed(Account account) {
+        account.setLastUsed(System.currentTimeMillis());
+    }
+
+    // Other accounts, most recently used first
+    public List<Account> getRecentAccounts(int limit) {
+        List<Account> recent = new ArrayList<>(accounts);
+        recent.remove(currentAccount);
+        recent.sort(Comparator.comparingLong(Account::getLastUsed).reversed());
+        return recent.subList(0, Math.min(limit, recent.size()));
+    }
     
     public void addAccount(String name) {
         Account account = new Account(name);
@@ -97,9 +111,14 @@ public void removeAccount(Account account) {
     @SuppressWarnings("unchecked")
     private void loadAccounts() {
         File accountsFile = new File(DATA_DIR + File.separator + ACCOUNTS_FILE);
-        if (accountsFile.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(accountsFile))) {
-                accounts = (List<Account>) ois.readObject();
+        if (AtomicFiles.exists(accountsFile)) {
+            try {
+                accounts = AtomicFiles.read(accountsFile, payload -> {
+                    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(
+                            payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()))) {
+                        return (List<Account>) ois.readObject();
+                    }
+                }).getValue();
             } catch (Exception e) {
                 e.printStackTrace();
                 accounts = new ArrayList<>();
@@ -109,7 +128,7 @@ public void removeAccount(Account account) {
         }
     }
     
-    private void saveAccounts() {
+    public void saveAccounts() {
         // Create data directory if it doesn't exist
         File dataDir = new File(DATA_DIR);
         if (!dataDir.exists()) {
@@ -117,8 +136,12 @@ public void removeAccount(Account account) {
         }
         
         File accountsFile = new File(DATA_DIR + File.separator + ACCOUNTS_FILE);
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(accountsFile))) {
-            oos.writeObject(accounts);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(accounts);
+            }
+            AtomicFiles.write(accountsFile, bytes.toByteArray());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -0,0 +1,200 @@
+package com.tradingjournal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Crash-safe whole-file writes for the journal's data files.
+ *
+ * A save goes to name.tmp, gets a CRC32C footer, is fsynced and then renamed
+ * over the live file; the file it replaces is kept as name.1, the previous
+ * generation. On load the footer is verified and, if the live file is
+ * missing or damaged, the newest intact generation is used instead.
+ *
+ * Files written before the footer existed have no footer and are accepted
+ * as they are; the caller's parser still has to accept their contents.
+ */
+public final class AtomicFiles {
+    private static final int FOOTER_MAGIC = 0x544A434B; // "TJCK"
+    private static final int FOOTER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static final String TMP_SUFFIX = ".tmp";
+    public static final String PREVIOUS_SUFFIX = ".1";
+
+    public interface Output {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    public interface Parser<T> {
+        T parse(ByteBuffer payload) throws Exception;
+    }
+
+    /** A successfully loaded file and the generation it came from. */
+    public static final class Generation<T> {
+        private final T value;
+        private final File file;
+        private final boolean fallback;
+
+        private Generation(T value, File file, boolean fallback) {
+            this.value = value;
+            this.file = file;
+            this.fallback = fallback;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        // True when the live file was missing or damaged and an older copy was used
+        public boolean isFallback() {
+            return fallback;
+        }
+    }
+
+    private AtomicFiles() {
+    }
+
+    public static void write(File target, byte[] payload) throws IOException {
+        write(target, out -> out.write(payload));
+    }
+
+    public static void write(File target, Output output) throws IOException {
+        File tmp = sibling(target, TMP_SUFFIX);
+        CRC32C crc = new CRC32C();
+        try (FileOutputStream file = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(file, crc), BUFFER_SIZE));
+            output.writeTo(out);
+            out.flush();
+
+            long length = file.getChannel().position();
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            footer.putLong(length).putInt((int) crc.getValue()).putInt(FOOTER_MAGIC);
+            file.write(footer.array());
+            file.getFD().sync();
+        }
+
+        // Only an intact live file may replace the previous generation
+        File previous = sibling(target, PREVIOUS_SUFFIX);
+        if (target.exists()) {
+            if (isIntact(target)) {
+                move(target, previous);
+            } else {
+                System.err.println("Discarding damaged " + target + ", keeping " + previous);
+                Files.delete(target.toPath());
+            }
+        }
+        move(tmp, target);
+        syncDirectory(target.getParentFile());
+    }
+
+    public static <T> Generation<T> read(File target, Parser<T> parser) throws IOException {
+        File tmp = sibling(target, TMP_SUFFIX);
+        File previous = sibling(target, PREVIOUS_SUFFIX);
+        Exception failure = null;
+
+        // tmp only counts if it was completely written before a crash interrupted the rename
+        for (File candidate : Arrays.asList(target, tmp, previous)) {
+            if (!candidate.exists()) {
+                continue;
+            }
+            try {
+                T value = parser.parse(verify(candidate));
+                if (candidate != target) {
+                    System.err.println("Recovered " + target.getName() + " from " + candidate);
+                }
+                return new Generation<>(value, candidate, candidate != target);
+            } catch (Exception e) {
+                System.err.println("Cannot use " + candidate + ": " + e.getMessage());
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw new IOException("No intact copy of " + target + " left", failure);
+        }
+        return null;
+    }
+
+    // True when the file or a generation that read() could fall back to exists
+    public static boolean exists(File target) {
+        return target.exists() || sibling(target, TMP_SUFFIX).exists() || sibling(target, PREVIOUS_SUFFIX).exists();
+    }
+
+    public static void delete(File target) throws IOException {
+        for (File file : List.of(target, sibling(target, TMP_SUFFIX), sibling(target, PREVIOUS_SUFFIX))) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    public static ByteBuffer verify(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (bytes.length < FOOTER_SIZE) {
+            return ByteBuffer.wrap(bytes);
+        }
+        ByteBuffer footer = ByteBuffer.wrap(bytes, bytes.length - FOOTER_SIZE, FOOTER_SIZE);
+        long length = footer.getLong();
+        int expected = footer.getInt();
+        if (footer.getInt() != FOOTER_MAGIC) {
+            // Written before checksums were added
+            return ByteBuffer.wrap(bytes);
+        }
+        if (length != bytes.length - FOOTER_SIZE) {
+            throw new IOException("Length mismatch in " + file);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, (int) length);
+        if ((int) crc.getValue() != expected) {
+            throw new IOException("Checksum mismatch in " + file);
+        }
+        return ByteBuffer.wrap(bytes, 0, (int) length).slice();
+    }
+
+    private static boolean isIntact(File file) {
+        try {
+            verify(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Makes the renames durable; directories cannot be opened for sync on Windows
+    private static void syncDirectory(File dir) {
+        if (dir == null) {
+            return;
+        }
+        Path path = dir.toPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort only
+        }
+    }
+
+    private static File sibling(File file, String suffix) {
+        return new File(file.getPath() + suffix);
+    }
+}
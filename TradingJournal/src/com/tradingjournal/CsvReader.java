@@ -0,0 +1,136 @@
+package com.tradingjournal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming RFC 4180 CSV reader.
+ *
+ * Reads one record at a time from a fixed character buffer, so memory use
+ * does not depend on the file size. Quoted fields may contain commas,
+ * doubled quotes and line breaks; records may end in LF, CRLF or CR. The
+ * field array and the character scratch buffer are reused between records,
+ * only the field strings themselves are allocated.
+ */
+public class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long charsRead;
+
+    private char[] field = new char[256];
+    private int fieldLength;
+    private String[] fields = new String[16];
+    private int fieldCount;
+    private long recordNumber;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /** Advances to the next record; false at the end of the input. */
+    public boolean next() throws IOException {
+        fieldCount = 0;
+        if (!fill()) {
+            return false;
+        }
+        boolean quoted = false;
+        boolean afterQuote = false;
+        fieldLength = 0;
+
+        while (true) {
+            if (position == limit && !fill()) {
+                endField();
+                break;
+            }
+            char c = buffer[position++];
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                    afterQuote = true;
+                } else {
+                    append(c);
+                }
+            } else if (c == '"') {
+                // A doubled quote inside a quoted field is a literal quote
+                if (afterQuote) {
+                    append('"');
+                }
+                quoted = true;
+                afterQuote = false;
+            } else if (c == ',') {
+                endField();
+                afterQuote = false;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && (position < limit || fill()) && buffer[position] == '\n') {
+                    position++;
+                }
+                endField();
+                break;
+            } else {
+                append(c);
+                afterQuote = false;
+            }
+        }
+        recordNumber++;
+        return true;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public String getField(int index) {
+        return index < fieldCount ? fields[index] : null;
+    }
+
+    // 1-based number of the record last returned by next()
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    // Characters consumed so far, for progress against the file length
+    public long getCharsRead() {
+        return charsRead - (limit - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            position = limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        charsRead += read;
+        return true;
+    }
+
+    private void append(char c) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, fieldLength * 2);
+        }
+        field[fieldLength++] = c;
+    }
+
+    private void endField() {
+        if (fieldCount == fields.length) {
+            fields = Arrays.copyOf(fields, fieldCount * 2);
+        }
+        fields[fieldCount++] = new String(field, 0, fieldLength);
+        fieldLength = 0;
+    }
+}
@@ -0,0 +1,201 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Trades grouped by calendar day, sorted by date, with per-day count and net
+ * returns kept up to date as trades change. A month in the calendar is a
+ * range lookup and a day drill-down a single lookup, instead of a scan over
+ * every trade.
+ *
+ * A day keeps the ids and returns of its trades, not the trades; the
+ * drill-down looks its trades up by id in the trade list, one lookup per
+ * trade of that day.
+ */
+public class DateIndex extends TradeAggregate<DateIndex.Entry> {
+
+    public static final class Day {
+        private final LocalDate date;
+        // Ids and returns of the day's trades in the order they were added
+        private long[] ids = new long[2];
+        private double[] returns = new double[2];
+        private int count;
+        private double netReturns;
+        private int winningTrades;
+        private int losingTrades;
+
+        Day(LocalDate date) {
+            this.date = date;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public int getTradeCount() {
+            return count;
+        }
+
+        public long getTradeId(int i) {
+            return ids[i];
+        }
+
+        public double getReturns(int i) {
+            return returns[i];
+        }
+
+        public double getNetReturns() {
+            return netReturns;
+        }
+
+        public int getWinningTrades() {
+            return winningTrades;
+        }
+
+        public int getLosingTrades() {
+            return losingTrades;
+        }
+
+        private void add(long id, double amount) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                returns = Arrays.copyOf(returns, count * 2);
+            }
+            ids[count] = id;
+            returns[count] = amount;
+            count++;
+        }
+
+        private void remove(long id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == id) {
+                    System.arraycopy(ids, i + 1, ids, i, count - i - 1);
+                    System.arraycopy(returns, i + 1, returns, i, count - i - 1);
+                    count--;
+                    return;
+                }
+            }
+        }
+    }
+
+    static final class Entry {
+        final long epochDay;
+        final double returns;
+        final boolean win;
+        final boolean loss;
+        final long id;
+
+        Entry(long epochDay, double returns, Trade.Status status, long id) {
+            this.epochDay = epochDay;
+            this.returns = returns;
+            this.win = status == Trade.Status.WIN;
+            this.loss = status == Trade.Status.LOSS;
+            this.id = id;
+        }
+    }
+
+    private final NavigableMap<Long, Day> days = new TreeMap<>();
+    private long version;
+
+    @Override
+    protected Entry add(Trade trade) {
+        if (trade.getDate() == null) {
+            return new Entry(Long.MIN_VALUE, 0, null, trade.getId());
+        }
+        Entry entry = new Entry(trade.getDate().toEpochDay(), trade.getReturns(), trade.getStatusValue(), trade.getId());
+        Day day = days.computeIfAbsent(entry.epochDay, d -> new Day(trade.getDate()));
+        day.add(entry.id, entry.returns);
+        day.netReturns += entry.returns;
+        if (entry.win) {
+            day.winningTrades++;
+        }
+        if (entry.loss) {
+            day.losingTrades++;
+        }
+        return entry;
+    }
+
+    @Override
+    protected void remove(Entry entry) {
+        Day day = days.get(entry.epochDay);
+        if (day == null) {
+            return;
+        }
+        day.remove(entry.id);
+        day.netReturns -= entry.returns;
+        if (entry.win) {
+            day.winningTrades--;
+        }
+        if (entry.loss) {
+            day.losingTrades--;
+        }
+        if (day.count == 0) {
+            days.remove(entry.epochDay);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        days.clear();
+        version++;
+    }
+
+    @Override
+    protected void changed() {
+        version++;
+    }
+
+    // Bumped on every change so derived structures know when to rebuild
+    public long getVersion() {
+        return version;
+    }
+
+    public Day getDay(LocalDate date) {
+        return days.get(date.toEpochDay());
+    }
+
+    // Looks the day's trades up by id in the trade list, in the order they were added
+    public List<Trade> getTrades(LocalDate date) {
+        Day day = getDay(date);
+        if (day == null) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(day.count);
+        for (int i = 0; i < day.count; i++) {
+            ids.add(day.ids[i]);
+        }
+        Map<Long, Trade> found = find(ids);
+        List<Trade> trades = new ArrayList<>(found.size());
+        for (long id : ids) {
+            Trade trade = found.get(id);
+            if (trade != null) {
+                trades.add(trade);
+            }
+        }
+        return trades;
+    }
+
+    // Days with trades between the two dates, both inclusive, in date order; null leaves that end open
+    public NavigableMap<Long, Day> getDays(LocalDate from, LocalDate to) {
+        NavigableMap<Long, Day> view = days;
+        if (from != null) {
+            view = view.tailMap(from.toEpochDay(), true);
+        }
+        if (to != null) {
+            view = view.headMap(to.toEpochDay(), true);
+        }
+        return Collections.unmodifiableNavigableMap(view);
+    }
+
+    public NavigableMap<Long, Day> getAllDays() {
+        return Collections.unmodifiableNavigableMap(days);
+    }
+}
@@ -0,0 +1,74 @@
+package com.tradingjournal;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling for line charts.
+ *
+ * Picks at most {@code threshold} points out of a series so the chart only
+ * lays out about one point per pixel, while keeping the points that shape
+ * the line: local peaks and drawdowns win their bucket because they span the
+ * largest triangle with their neighbours. The first and last points are
+ * always kept. x values must be non-decreasing.
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    // Returns the indices of the points to draw, in ascending order
+    public static int[] lttb(int size, IntToDoubleFunction x, IntToDoubleFunction y, int threshold) {
+        if (size <= threshold || size <= 2) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        if (threshold < 3) {
+            return new int[]{0, size - 1};
+        }
+
+        int[] sampled = new int[threshold];
+        int count = 0;
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+
+        int a = 0;
+        sampled[count++] = a;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket is the third corner of the triangle
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += x.applyAsDouble(j);
+                avgY += y.applyAsDouble(j);
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double ax = x.applyAsDouble(a);
+            double ay = y.applyAsDouble(a);
+            double maxArea = -1;
+            int chosen = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - avgX) * (y.applyAsDouble(j) - ay)
+                        - (ax - x.applyAsDouble(j)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+            sampled[count++] = chosen;
+            a = chosen;
+        }
+
+        sampled[count++] = size - 1;
+        return sampled;
+    }
+}
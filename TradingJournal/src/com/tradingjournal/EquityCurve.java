@@ -0,0 +1,206 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Account equity after every trade in date order, starting from the account
+ * balance, with the running peak, drawdown and time under water.
+ *
+ * Everything is computed in a single pass. Trades appended on or after the
+ * last date, which is how a journal normally grows, extend the curve in
+ * constant time. Anything else (an edit, a delete, a back-dated trade, a new
+ * balance) marks the curve stale, and it is rebuilt from the date index the
+ * next time it is read.
+ */
+public class EquityCurve extends TradeAggregate<Boolean> {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final DateIndex dateIndex;
+    private final DoubleSupplier startingBalance;
+    private boolean stale;
+    private double balance;
+
+    private int size;
+    private long[] epochDays = new long[INITIAL_CAPACITY];
+    private double[] equity = new double[INITIAL_CAPACITY];
+    // Percent below the running peak after each trade, zero or negative
+    private double[] underwater = new double[INITIAL_CAPACITY];
+
+    private double peak;
+    private long peakDay;
+    private double maxDrawdown;
+    private double maxDrawdownPercent;
+    private long longestUnderwaterDays;
+
+    public EquityCurve(DateIndex dateIndex, DoubleSupplier startingBalance) {
+        this.dateIndex = dateIndex;
+        this.startingBalance = startingBalance;
+        clear();
+    }
+
+    // Brings the curve up to date; the point getters below read what this counted
+    public int getPointCount() {
+        ensureBuilt();
+        return size;
+    }
+
+    public long getEpochDay(int i) {
+        return epochDays[i];
+    }
+
+    public double getEquity(int i) {
+        return equity[i];
+    }
+
+    public double getUnderwater(int i) {
+        return underwater[i];
+    }
+
+    // Position of the first point dated on or after the given day
+    public int indexOf(long epochDay) {
+        ensureBuilt();
+        int index = Arrays.binarySearch(epochDays, 0, size, epochDay);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && epochDays[index - 1] == epochDay) {
+            index--;
+        }
+        return index;
+    }
+
+    public double getStartingBalance() {
+        ensureBuilt();
+        return balance;
+    }
+
+    public double getCurrentEquity() {
+        ensureBuilt();
+        return size > 0 ? equity[size - 1] : balance;
+    }
+
+    public double getMaxDrawdown() {
+        ensureBuilt();
+        return maxDrawdown;
+    }
+
+    public double getMaxDrawdownPercent() {
+        ensureBuilt();
+        return maxDrawdownPercent;
+    }
+
+    public double getCurrentDrawdown() {
+        ensureBuilt();
+        return peak - getCurrentEquity();
+    }
+
+    public double getCurrentDrawdownPercent() {
+        ensureBuilt();
+        return size > 0 ? -underwater[size - 1] : 0;
+    }
+
+    // Calendar days from a peak until equity got back to it, for the longest such stretch so far
+    public long getLongestUnderwaterDays() {
+        ensureBuilt();
+        return Math.max(longestUnderwaterDays, getCurrentUnderwaterDays());
+    }
+
+    // Calendar days since the last peak, up to the last trade; zero when at a peak
+    public long getCurrentUnderwaterDays() {
+        ensureBuilt();
+        return size > 0 && equity[size - 1] < peak ? epochDays[size - 1] - peakDay : 0;
+    }
+
+    // Net profit over the largest drawdown; NaN while there has been no drawdown
+    public double getRecoveryFactor() {
+        ensureBuilt();
+        return maxDrawdown > 0 ? (getCurrentEquity() - balance) / maxDrawdown : Double.NaN;
+    }
+
+    @Override
+    protected Boolean add(Trade trade) {
+        if (trade.getDate() == null) {
+            return Boolean.FALSE;
+        }
+        long epochDay = trade.getDate().toEpochDay();
+        if (!stale && (size == 0 || epochDay >= epochDays[size - 1])) {
+            append(epochDay, trade.getReturns());
+        } else {
+            stale = true;
+        }
+        return Boolean.TRUE;
+    }
+
+    @Override
+    protected void remove(Boolean dated) {
+        if (dated) {
+            stale = true;
+        }
+    }
+
+    @Override
+    protected void reset() {
+        clear();
+    }
+
+    private void ensureBuilt() {
+        if (!stale && balance == startingBalance.getAsDouble()) {
+            return;
+        }
+        long start = System.nanoTime();
+        clear();
+        for (DateIndex.Day day : dateIndex.getAllDays().values()) {
+            long epochDay = day.getDate().toEpochDay();
+            for (int i = 0; i < day.getTradeCount(); i++) {
+                append(epochDay, day.getReturns(i));
+            }
+        }
+        System.out.println("Rebuilt equity curve of " + size + " trades in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private void clear() {
+        stale = false;
+        balance = startingBalance.getAsDouble();
+        size = 0;
+        peak = balance;
+        peakDay = Long.MIN_VALUE;
+        maxDrawdown = 0;
+        maxDrawdownPercent = 0;
+        longestUnderwaterDays = 0;
+    }
+
+    // One step of the running pass: new equity, then peak, drawdown and time under water
+    private void append(long epochDay, double returns) {
+        if (size == epochDays.length) {
+            int capacity = size * 2;
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            equity = Arrays.copyOf(equity, capacity);
+            underwater = Arrays.copyOf(underwater, capacity);
+        }
+        double previous = size > 0 ? equity[size - 1] : balance;
+        double value = previous + returns;
+        if (peakDay == Long.MIN_VALUE) {
+            // The balance counts as a peak on the first trade's day
+            peakDay = epochDay;
+        }
+        if (value >= peak) {
+            if (previous < peak) {
+                longestUnderwaterDays = Math.max(longestUnderwaterDays, epochDay - peakDay);
+            }
+            peak = value;
+            peakDay = epochDay;
+        }
+        double drawdown = peak - value;
+        double percent = peak > 0 ? drawdown * 100 / peak : 0;
+        maxDrawdown = Math.max(maxDrawdown, drawdown);
+        maxDrawdownPercent = Math.max(maxDrawdownPercent, percent);
+
+        epochDays[size] = epochDay;
+        equity[size] = value;
+        underwater[size] = -percent;
+        size++;
+    }
+}
@@ -0,0 +1,242 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.JournalSettings;
+import com.tradingjournal.TradingJournalApp.SetupEntryDetails;
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+
+/**
+ * Content-addressed storage for an account's screenshots.
+ *
+ * A stored image is named after the SHA-256 of its bytes, so attaching the
+ * same screenshot to several trades or setups keeps a single file. The
+ * store counts references to each image from the trade list (kept up to date
+ * as a trade aggregate) and from the setup and entry type details. When a
+ * count drops to zero a background collection is scheduled, which deletes
+ * image files no longer referenced by anything.
+ *
+ * The collector only deletes files that have been left alone for a grace
+ * period, so an image that was just stored or re-stored is never collected
+ * before the trade that uses it is saved.
+ */
+public class ImageStore extends TradeAggregate<String[]> {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final long GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long COLLECT_DELAY_SECONDS = 30;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String[] NONE = new String[0];
+
+    private static final ScheduledExecutorService COLLECTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "image-collector");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final File directory;
+    private final BooleanSupplier collectable;
+    private final Consumer<String> deleted;
+    private final Map<String, Integer> tradeReferences = new HashMap<>();
+    private final Map<String, Integer> itemReferences = new HashMap<>();
+    private boolean orphaned;
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * @param collectable false until the journal has loaded completely, so a missing trade never looks like an orphan
+     * @param deleted told the path of each image the collector deletes
+     */
+    public ImageStore(File directory, BooleanSupplier collectable, Consumer<String> deleted) {
+        this.directory = directory;
+        this.collectable = collectable;
+        this.deleted = deleted;
+    }
+
+    /** Copies the image into the store and returns its stored path; an identical image is reused. */
+    public String store(File source) throws IOException {
+        Files.createDirectories(directory.toPath());
+        MessageDigest digest = newDigest();
+        Path temp = Files.createTempFile(directory.toPath(), "import", TEMP_SUFFIX);
+        try {
+            try (InputStream in = new DigestInputStream(new BufferedInputStream(Files.newInputStream(source.toPath())), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Path target = directory.toPath().resolve(toHex(digest.digest()) + extension(source.getName()));
+            if (Files.exists(target)) {
+                Files.delete(temp);
+                // Restart the grace period in case the collector already considers it an orphan
+                target.toFile().setLastModified(System.currentTimeMillis());
+                System.out.println("Image " + source.getName() + " is already stored as " + target.getFileName());
+            } else {
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                System.out.println("Stored image " + source.getName() + " as " + target.getFileName());
+            }
+            return target.toString();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Recounts the images of the setup and entry type details after the settings changed
+    public void updateItems(JournalSettings settings) {
+        Set<String> before = new HashSet<>(itemReferences.keySet());
+        itemReferences.clear();
+        countItems(settings.getSetupDetails());
+        countItems(settings.getEntryTypeDetails());
+        before.removeAll(itemReferences.keySet());
+        if (!before.isEmpty()) {
+            scheduleCollection();
+        }
+    }
+
+    private void countItems(List<SetupEntryDetails> items) {
+        if (items == null) {
+            return;
+        }
+        for (SetupEntryDetails item : items) {
+            if (item.getImages() != null) {
+                for (String imagePath : item.getImages()) {
+                    itemReferences.merge(key(imagePath), 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /** Collects orphaned images after a short delay; a later call within the delay replaces the earlier one. */
+    public void scheduleCollection() {
+        if (!collectable.getAsBoolean()) {
+            return;
+        }
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        // The reference counts belong to the FX thread, so they are read there and the files swept here
+        scheduled = COLLECTOR.schedule(() -> Platform.runLater(() -> {
+            if (!collectable.getAsBoolean()) {
+                return;
+            }
+            Set<String> live = new HashSet<>(tradeReferences.keySet());
+            live.addAll(itemReferences.keySet());
+            COLLECTOR.execute(() -> collect(live));
+        }), COLLECT_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void collect(Set<String> live) {
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long cutoff = start - GRACE_MILLIS;
+        int count = 0;
+        long bytes = 0;
+        for (File file : files) {
+            if (file.lastModified() > cutoff || live.contains(file.getName())) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                count++;
+                bytes += length;
+                if (!file.getName().endsWith(TEMP_SUFFIX)) {
+                    deleted.accept(file.getPath());
+                }
+            } else {
+                System.err.println("Failed to delete orphaned image: " + file);
+            }
+        }
+        System.out.println("Image collection removed " + count + " orphaned files (" + bytes / 1024 + " KB) of "
+                + files.length + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    @Override
+    protected String[] add(Trade trade) {
+        List<String> images = trade.getImages();
+        if (images == null || images.isEmpty()) {
+            return NONE;
+        }
+        String[] keys = new String[images.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(images.get(i));
+            tradeReferences.merge(keys[i], 1, Integer::sum);
+        }
+        return keys;
+    }
+
+    @Override
+    protected void remove(String[] keys) {
+        for (String key : keys) {
+            if (tradeReferences.merge(key, -1, Integer::sum) <= 0) {
+                tradeReferences.remove(key);
+                orphaned = true;
+            }
+        }
+    }
+
+    @Override
+    protected void reset() {
+        tradeReferences.clear();
+    }
+
+    @Override
+    protected void changed() {
+        if (orphaned) {
+            orphaned = false;
+            scheduleCollection();
+        }
+    }
+
+    // References are matched by file name: names in the store are unique, and a journal whose data
+    // folder moved still protects its images even though the stored paths point at the old folder
+    private static String key(String imagePath) {
+        return new File(imagePath).getName();
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        String extension = dot > 0 ? name.substring(dot).toLowerCase(Locale.ROOT) : "";
+        return extension.matches("\\.[a-z0-9]{1,8}") ? extension : "";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.collections.ModifiableObservableListBase;
+
+/**
+ * The in-memory trade list of an account on the trade log, with a map from
+ * trade id to trade kept in step with every change.
+ *
+ * Aggregates keep trade ids and turn them back into trades through
+ * findById(), so opening one day or ranking the top trades costs a lookup
+ * per trade shown rather than a pass over the whole list.
+ */
+public class IndexedTradeList extends ModifiableObservableListBase<Trade> implements TradeStore.IndexedList {
+    private final List<Trade> trades;
+    private final Map<Long, Trade> byId = new HashMap<>();
+
+    public IndexedTradeList() {
+        this(new ArrayList<>());
+    }
+
+    public IndexedTradeList(Collection<Trade> initial) {
+        trades = new ArrayList<>(initial);
+        for (Trade trade : trades) {
+            byId.put(trade.getId(), trade);
+        }
+    }
+
+    @Override
+    public Trade findById(long id) {
+        return byId.get(id);
+    }
+
+    @Override
+    public Trade get(int index) {
+        return trades.get(index);
+    }
+
+    @Override
+    public int size() {
+        return trades.size();
+    }
+
+    @Override
+    protected void doAdd(int index, Trade trade) {
+        trades.add(index, trade);
+        byId.put(trade.getId(), trade);
+    }
+
+    @Override
+    protected Trade doSet(int index, Trade trade) {
+        Trade old = trades.set(index, trade);
+        byId.remove(old.getId(), old);
+        byId.put(trade.getId(), trade);
+        return old;
+    }
+
+    @Override
+    protected Trade doRemove(int index) {
+        Trade old = trades.remove(index);
+        byId.remove(old.getId(), old);
+        return old;
+    }
+
+    // One shift of the backing list instead of one per removed trade, which matters when setAll() clears it
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        List<Trade> range = trades.subList(fromIndex, toIndex);
+        List<Trade> removed = new ArrayList<>(range);
+        range.clear();
+        for (Trade trade : removed) {
+            byId.remove(trade.getId(), trade);
+        }
+        modCount++;
+        beginChange();
+        nextRemove(fromIndex, removed);
+        endChange();
+    }
+}
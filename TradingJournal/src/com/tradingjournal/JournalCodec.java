@@ -0,0 +1,326 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.JournalSettings;
+import com.tradingjournal.TradingJournalApp.SetupEntryDetails;
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written binary format for trades and settings.
+ *
+ * Every file starts with a magic number and a schema version. Dates are
+ * stored as epoch days, prices as raw doubles, and in trade snapshots the
+ * short repeating strings (symbol, setup, side...) are written once into a
+ * dictionary and referenced by index. Derived values such as status and
+ * return percentage are recomputed on load and not stored.
+ */
+public final class JournalCodec {
+    public static final int TRADES_MAGIC = 0x544A5453;   // "TJTS"
+    public static final int SETTINGS_MAGIC = 0x544A5345; // "TJSE"
+    public static final int TRADES_VERSION = 1;
+    public static final int SETTINGS_VERSION = 3;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_STRING = -1;
+
+    private JournalCodec() {
+    }
+
+    // Java serialization streams always start with 0xACED
+    public static boolean isJavaSerialized(File file) throws IOException {
+        if (file.length() < 2) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 0xAC && in.read() == 0xED;
+        }
+    }
+
+    public static boolean isJavaSerialized(ByteBuffer payload) {
+        return payload.remaining() >= 2
+                && payload.get(payload.position()) == (byte) 0xAC
+                && payload.get(payload.position() + 1) == (byte) 0xED;
+    }
+
+    // ---- Trade snapshots ----
+
+    public static void writeTrades(File file, List<Trade> trades) throws IOException {
+        AtomicFiles.write(file, out -> writeTrades(out, trades));
+    }
+
+    public static byte[] encodeTrades(List<Trade> trades) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeTrades(out, trades);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static void writeTrades(DataOutputStream out, List<Trade> trades) throws IOException {
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (Trade trade : trades) {
+            intern(trade.getSymbol(), codes, dictionary);
+            intern(trade.getSetup(), codes, dictionary);
+            intern(trade.getEntryType(), codes, dictionary);
+            intern(trade.getSide(), codes, dictionary);
+            intern(trade.getDuration(), codes, dictionary);
+        }
+
+        out.writeInt(TRADES_MAGIC);
+        out.writeShort(TRADES_VERSION);
+        out.writeInt(dictionary.size());
+        for (String value : dictionary) {
+            writeString(out, value);
+        }
+        out.writeInt(trades.size());
+        for (Trade trade : trades) {
+            writeTrade(out, trade, codes);
+        }
+    }
+
+    public static List<Trade> readTrades(File file) throws IOException {
+        return AtomicFiles.read(file, JournalCodec::readTrades).getValue();
+    }
+
+    public static List<Trade> readTrades(ByteBuffer in) throws IOException {
+        if (in.remaining() < 6 || in.getInt() != TRADES_MAGIC) {
+            throw new IOException("Not a trades file");
+        }
+        int version = Short.toUnsignedInt(in.getShort());
+        checkVersion(version, TRADES_VERSION, "trades");
+
+        int dictionarySize = in.getInt();
+        List<String> dictionary = new ArrayList<>(dictionarySize);
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary.add(readString(in));
+        }
+        int count = in.getInt();
+        List<Trade> trades = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            trades.add(readTrade(in, dictionary));
+        }
+        return trades;
+    }
+
+    // ---- Single trades, used by trade log records (strings inline) ----
+
+    public static byte[] encodeTrade(Trade trade) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(TRADES_VERSION);
+        writeTrade(out, trade, null);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static Trade decodeTrade(byte[] payload) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        checkVersion(Short.toUnsignedInt(in.getShort()), TRADES_VERSION, "trade record");
+        return readTrade(in, null);
+    }
+
+    private static void writeTrade(DataOutputStream out, Trade trade, Map<String, Integer> codes) throws IOException {
+        out.writeLong(trade.getId());
+        out.writeInt(trade.getDate() != null ? (int) trade.getDate().toEpochDay() : NO_DATE);
+        out.writeDouble(trade.getEntry());
+        out.writeDouble(trade.getExit());
+        out.writeDouble(trade.getSize());
+        out.writeDouble(trade.getReturns());
+        out.writeDouble(trade.getBalance());
+        writeCoded(out, trade.getSymbol(), codes);
+        writeCoded(out, trade.getSetup(), codes);
+        writeCoded(out, trade.getEntryType(), codes);
+        writeCoded(out, trade.getSide(), codes);
+        writeCoded(out, trade.getDuration(), codes);
+        writeString(out, trade.getNotes());
+        writeStringList(out, trade.getImages());
+    }
+
+    private static Trade readTrade(ByteBuffer in, List<String> dictionary) throws IOException {
+        Trade trade = new Trade();
+        trade.setId(in.getLong());
+        int epochDay = in.getInt();
+        trade.setDate(epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null);
+        trade.setEntry(in.getDouble());
+        trade.setExit(in.getDouble());
+        trade.setSize(in.getDouble());
+        double returns = in.getDouble();
+        trade.setBalance(in.getDouble());
+        trade.setSymbol(readCoded(in, dictionary));
+        trade.setSetup(readCoded(in, dictionary));
+        trade.setEntryType(readCoded(in, dictionary));
+        String side = readCoded(in, dictionary);
+        if (side != null) {
+            trade.setSide(side);
+        }
+        trade.setDuration(readCoded(in, dictionary));
+        trade.setNotes(readString(in));
+        trade.setImages(readStringList(in));
+        // Status and return percentage are derived by the setters above
+        trade.setReturns(returns);
+        return trade;
+    }
+
+    // ---- Settings ----
+
+    public static void writeSettings(File file, JournalSettings settings) throws IOException {
+        AtomicFiles.write(file, encodeSettings(settings));
+    }
+
+    public static byte[] encodeSettings(JournalSettings settings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SETTINGS_MAGIC);
+            out.writeShort(SETTINGS_VERSION);
+            out.writeDouble(settings.getAccountBalance());
+            out.writeDouble(settings.getAverageRisk());
+            writeString(out, settings.getTradingRules());
+            writeStringList(out, settings.getSymbols());
+            writeDetails(out, settings.getSetupDetails());
+            writeDetails(out, settings.getEntryTypeDetails());
+            out.writeBoolean(settings.isUseMappedStorage());
+            out.writeDouble(settings.getMaxDailyLoss());
+            out.writeDouble(settings.getMaxDrawdown());
+            out.writeDouble(settings.getProfitTarget());
+            out.writeInt(settings.getMinTradingDays());
+            out.writeDouble(settings.getMaxRiskMultiple());
+        }
+        return bytes.toByteArray();
+    }
+
+    public static JournalSettings readSettings(File file) throws IOException {
+        return AtomicFiles.read(file, JournalCodec::readSettings).getValue();
+    }
+
+    public static JournalSettings readSettings(ByteBuffer in) throws IOException {
+        if (in.remaining() < 6 || in.getInt() != SETTINGS_MAGIC) {
+            throw new IOException("Not a settings file");
+        }
+        int version = Short.toUnsignedInt(in.getShort());
+        checkVersion(version, SETTINGS_VERSION, "settings");
+
+        JournalSettings settings = new JournalSettings();
+        settings.setAccountBalance(in.getDouble());
+        settings.setAverageRisk(in.getDouble());
+        settings.setTradingRules(readString(in));
+        settings.setSymbols(readStringList(in));
+        settings.setSetupDetails(readDetails(in));
+        settings.setEntryTypeDetails(readDetails(in));
+        if (version >= 2) {
+            settings.setUseMappedStorage(in.get() != 0);
+        }
+        if (version >= 3) {
+            settings.setMaxDailyLoss(in.getDouble());
+            settings.setMaxDrawdown(in.getDouble());
+            settings.setProfitTarget(in.getDouble());
+            settings.setMinTradingDays(in.getInt());
+            settings.setMaxRiskMultiple(in.getDouble());
+        }
+        return settings;
+    }
+
+    private static void writeDetails(DataOutputStream out, List<SetupEntryDetails> details) throws IOException {
+        out.writeInt(details.size());
+        for (SetupEntryDetails detail : details) {
+            writeString(out, detail.getName());
+            writeString(out, detail.getNotes());
+            writeStringList(out, detail.getImages());
+        }
+    }
+
+    private static List<SetupEntryDetails> readDetails(ByteBuffer in) throws IOException {
+        int count = in.getInt();
+        List<SetupEntryDetails> details = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SetupEntryDetails detail = new SetupEntryDetails(readString(in));
+            detail.setNotes(readString(in));
+            detail.getImages().addAll(readStringList(in));
+            details.add(detail);
+        }
+        return details;
+    }
+
+    // ---- Primitives ----
+
+    private static void checkVersion(int version, int supported, String what) throws IOException {
+        if (version < 1 || version > supported) {
+            throw new IOException("Unsupported " + what + " format version " + version);
+        }
+    }
+
+    private static void intern(String value, Map<String, Integer> codes, List<String> dictionary) {
+        if (value != null && !codes.containsKey(value)) {
+            codes.put(value, dictionary.size());
+            dictionary.add(value);
+        }
+    }
+
+    private static void writeCoded(DataOutputStream out, String value, Map<String, Integer> codes) throws IOException {
+        if (codes == null) {
+            writeString(out, value);
+        } else {
+            out.writeInt(value != null ? codes.get(value) : NO_STRING);
+        }
+    }
+
+    private static String readCoded(ByteBuffer in, List<String> dictionary) throws IOException {
+        if (dictionary == null) {
+            return readString(in);
+        }
+        int code = in.getInt();
+        return code != NO_STRING ? dictionary.get(code) : null;
+    }
+
+    // Length-prefixed UTF-8; writeUTF is avoided because it caps strings at 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NO_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length == NO_STRING) {
+            return null;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStringList(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStringList(ByteBuffer in) throws IOException {
+        int count = in.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
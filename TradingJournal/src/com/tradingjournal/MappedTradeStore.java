@@ -0,0 +1,877 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.*;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Optional storage engine for accounts with very large histories.
+ *
+ * Fixed-width trade fields live in one memory-mapped file per column under
+ * the account's columns directory. Symbol, setup, entry type and side are
+ * stored as int codes into a string dictionary; duration, notes and images
+ * go to an append-only side file. The list returned by open() builds Trade
+ * objects only for the rows that are actually read and writes every change
+ * straight through to the mapped columns.
+ *
+ * Unlike the trade log, this store does its writes on the JavaFX thread, as
+ * part of changing the list: a column write is a store into the mapping, and
+ * the details and dictionary files take one positioned write each. Nothing
+ * is synced there; force() and close() run on DataManager's writer.
+ *
+ * Rows are kept in ascending id order so a trade's row can be found by
+ * binary search on the id column.
+ *
+ * A trade's details are overwritten in place when the new ones fit and
+ * appended otherwise; the bytes this leaves unused are counted in the meta
+ * file. When they, or dictionary values no row uses any more, outgrow the
+ * live data, open() copies the rows into a fresh directory and switches the
+ * generation file over to it. The old directory is deleted afterwards, or on
+ * a later open if its files are still mapped.
+ */
+public class MappedTradeStore implements TradeStore {
+    private static final String COLUMNS_DIR = "columns";
+    private static final String GENERATION_FILE = "columns.gen";
+    private static final String META_FILE = "meta.bin";
+    private static final String EXTRAS_FILE = "extras.var";
+    private static final String DICTIONARY_FILE = "dictionary.var";
+
+    private static final int MAGIC = 0x544A434F; // "TJCO"
+    private static final int VERSION = 1;
+    private static final int META_SIZE = 32;
+    private static final int META_ROWS = 8;
+    private static final int META_NEXT_ID = 12;
+    private static final int META_EXTRAS_END = 20;
+    private static final int META_DEAD_BYTES = 28;
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_CODE = -1;
+    private static final long MIN_COMPACT_BYTES = 1 << 20;
+    private static final int MIN_COMPACT_VALUES = 1024;
+
+    private final File accountDir;
+    // Compaction moves the store to the directory of the next generation
+    private int generation;
+    private File dir;
+    // Set by read(), which opens the files without creating, writing or compacting anything
+    private boolean readOnly;
+    private final List<FileChannel> channels = new ArrayList<>();
+
+    private FileChannel metaChannel;
+    private MappedByteBuffer meta;
+    private FileChannel extrasChannel;
+    private FileChannel dictionaryChannel;
+
+    private Column ids;
+    private Column dates;
+    private Column entries;
+    private Column exits;
+    private Column sizes;
+    private Column returns;
+    private Column balances;
+    private Column symbols;
+    private Column setups;
+    private Column entryTypes;
+    private Column sides;
+    private Column extras;
+    private List<Column> columns;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    private int rowCount;
+    private long nextId;
+    private long extrasEnd;
+    private int deadBytes;
+    private TradeList list;
+
+    public MappedTradeStore(File accountDir) {
+        this.accountDir = accountDir;
+        this.dir = directoryOf(0);
+    }
+
+    @Override
+    public boolean exists() {
+        return AtomicFiles.exists(new File(accountDir, GENERATION_FILE)) || new File(dir, META_FILE).exists();
+    }
+
+    @Override
+    public ObservableList<Trade> open() throws IOException {
+        generation = readGeneration();
+        dir = directoryOf(generation);
+        deleteStale();
+        map();
+        if (needsCompaction()) {
+            compact();
+        }
+
+        System.out.println("Opened column store with " + rowCount + " trades in " + dir);
+        list = new TradeList();
+        return list;
+    }
+
+    /**
+     * Reads every trade, details included, for an account that is not open
+     * (the portfolio). The files are only read: nothing is created, synced
+     * or compacted, and a store that was never written reads as empty.
+     */
+    public List<Trade> read() throws IOException {
+        dir = directoryOf(readGeneration());
+        if (new File(dir, META_FILE).length() < META_SIZE) {
+            return Collections.emptyList();
+        }
+        readOnly = true;
+        try {
+            map();
+            List<Trade> trades = new ArrayList<>(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                trades.add(readRow(row));
+            }
+            return trades;
+        } finally {
+            closeChannels();
+        }
+    }
+
+    /**
+     * Copies the columns and the dictionary on the calling thread, which
+     * must be the one changing the list. The returned reader decodes the
+     * copy on any thread, without the details (duration, notes, images).
+     */
+    public Callable<List<Trade>> snapshot() {
+        if (meta == null) {
+            return Collections::emptyList;
+        }
+        MappedTradeStore copy = new MappedTradeStore(accountDir);
+        copy.rowCount = rowCount;
+        copy.ids = ids.copy(rowCount);
+        copy.dates = dates.copy(rowCount);
+        copy.entries = entries.copy(rowCount);
+        copy.exits = exits.copy(rowCount);
+        copy.sizes = sizes.copy(rowCount);
+        copy.returns = returns.copy(rowCount);
+        copy.balances = balances.copy(rowCount);
+        copy.symbols = symbols.copy(rowCount);
+        copy.setups = setups.copy(rowCount);
+        copy.entryTypes = entryTypes.copy(rowCount);
+        copy.sides = sides.copy(rowCount);
+        copy.dictionary.addAll(dictionary);
+        return () -> {
+            List<Trade> trades = new ArrayList<>(copy.rowCount);
+            for (int row = 0; row < copy.rowCount; row++) {
+                trades.add(copy.readColumns(row));
+            }
+            return trades;
+        };
+    }
+
+    private void map() throws IOException {
+        if (!readOnly && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create column directory " + dir);
+        }
+
+        metaChannel = openChannel(META_FILE);
+        boolean fresh = metaChannel.size() < META_SIZE;
+        meta = metaChannel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, META_SIZE);
+        if (fresh) {
+            meta.putInt(0, MAGIC);
+            meta.putInt(4, VERSION);
+            meta.putInt(META_ROWS, 0);
+            meta.putLong(META_NEXT_ID, 1);
+            meta.putLong(META_EXTRAS_END, 0);
+            meta.putInt(META_DEAD_BYTES, 0);
+        } else if (meta.getInt(0) != MAGIC || meta.getInt(4) != VERSION) {
+            throw new IOException("Unsupported column store in " + dir);
+        }
+        rowCount = meta.getInt(META_ROWS);
+        nextId = meta.getLong(META_NEXT_ID);
+        extrasEnd = meta.getLong(META_EXTRAS_END);
+        deadBytes = meta.getInt(META_DEAD_BYTES);
+
+        ids = new Column("id.col", 8);
+        dates = new Column("date.col", 4);
+        entries = new Column("entry.col", 8);
+        exits = new Column("exit.col", 8);
+        sizes = new Column("size.col", 8);
+        returns = new Column("returns.col", 8);
+        balances = new Column("balance.col", 8);
+        symbols = new Column("symbol.col", 4);
+        setups = new Column("setup.col", 4);
+        entryTypes = new Column("entryType.col", 4);
+        sides = new Column("side.col", 4);
+        extras = new Column("extras.col", 8);
+        columns = List.of(ids, dates, entries, exits, sizes, returns, balances,
+                symbols, setups, entryTypes, sides, extras);
+
+        extrasChannel = openChannel(EXTRAS_FILE);
+        dictionaryChannel = openChannel(DICTIONARY_FILE);
+        loadDictionary();
+    }
+
+    @Override
+    public void assignId(Trade trade) {
+        if (trade.getId() <= 0) {
+            trade.setId(nextId++);
+        } else {
+            nextId = Math.max(nextId, trade.getId() + 1);
+        }
+        meta.putLong(META_NEXT_ID, nextId);
+    }
+
+    // The list returned by open() writes through, so there is nothing left to persist here
+    @Override
+    public PersistenceQueue.Write tradesAdded(List<Trade> added) {
+        return null;
+    }
+
+    @Override
+    public PersistenceQueue.Write tradeUpdated(Trade trade) {
+        return null;
+    }
+
+    @Override
+    public PersistenceQueue.Write tradeDeleted(Trade trade) {
+        return null;
+    }
+
+    @Override
+    public PersistenceQueue.Write tradesReplaced(List<Trade> trades) {
+        return null;
+    }
+
+    public void force() {
+        if (meta == null) {
+            return;
+        }
+        for (Column column : columns) {
+            column.force();
+        }
+        meta.force();
+        try {
+            extrasChannel.force(false);
+            dictionaryChannel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error syncing column store: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (meta == null) {
+            return;
+        }
+        force();
+        closeChannels();
+    }
+
+    private void closeChannels() {
+        try {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error closing column store: " + e.getMessage());
+        }
+        channels.clear();
+        meta = null;
+    }
+
+    @Override
+    public void delete() throws IOException {
+        close();
+        deleteDirectory(dir);
+        AtomicFiles.delete(new File(accountDir, GENERATION_FILE));
+    }
+
+    // ---- Compaction ----
+
+    private File directoryOf(int generation) {
+        return new File(accountDir, generation == 0 ? COLUMNS_DIR : COLUMNS_DIR + "." + generation);
+    }
+
+    private int readGeneration() throws IOException {
+        File file = new File(accountDir, GENERATION_FILE);
+        return AtomicFiles.exists(file) ? AtomicFiles.read(file, ByteBuffer::getInt).getValue() : 0;
+    }
+
+    // Removes the directories of earlier generations, and a copy that a crash cut short
+    private void deleteStale() {
+        File[] stale = accountDir.listFiles(file -> file.isDirectory() && !file.equals(dir)
+                && file.getName().matches(COLUMNS_DIR + "(\\.\\d+)?"));
+        if (stale == null) {
+            return;
+        }
+        for (File old : stale) {
+            try {
+                deleteDirectory(old);
+            } catch (IOException e) {
+                System.err.println("Cannot delete old column store " + old + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean needsCompaction() {
+        if (deadBytes > Math.max(MIN_COMPACT_BYTES, extrasEnd / 2)) {
+            return true;
+        }
+        boolean[] used = new boolean[dictionary.size()];
+        int usedCount = 0;
+        for (Column column : List.of(symbols, setups, entryTypes, sides)) {
+            for (int row = 0; row < rowCount; row++) {
+                int code = column.buffer.getInt(row * 4);
+                if (code >= 0 && code < used.length && !used[code]) {
+                    used[code] = true;
+                    usedCount++;
+                }
+            }
+        }
+        return used.length - usedCount > Math.max(MIN_COMPACT_VALUES, usedCount);
+    }
+
+    // Rewrites every row into the next generation's directory, which only becomes current once it is complete
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        MappedTradeStore copy = new MappedTradeStore(accountDir);
+        copy.generation = generation + 1;
+        copy.dir = directoryOf(copy.generation);
+        deleteDirectory(copy.dir);
+        copy.map();
+        for (Column column : copy.columns) {
+            column.ensureCapacity(rowCount);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            copy.writeRow(row, readRow(row));
+            copy.setRowCount(row + 1);
+        }
+        copy.nextId = nextId;
+        copy.meta.putLong(META_NEXT_ID, nextId);
+        copy.close();
+        AtomicFiles.write(new File(accountDir, GENERATION_FILE), ByteBuffer.allocate(4).putInt(copy.generation).array());
+
+        System.out.println("Compacted column store: details " + extrasEnd / 1024 + " KB to " + copy.extrasEnd / 1024
+                + " KB, dictionary " + dictionary.size() + " to " + copy.dictionary.size() + " values in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        close();
+        generation = copy.generation;
+        dir = copy.dir;
+        deleteStale();
+        map();
+    }
+
+    private static void deleteDirectory(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    // ---- Row access ----
+
+    private Trade readRow(int row) {
+        Trade trade = readColumns(row);
+        readExtras(extras.buffer.getLong(row * 8), trade);
+        return trade;
+    }
+
+    // Everything but the details; the returns go last as setting the prices recalculates them
+    private Trade readColumns(int row) {
+        Trade trade = new Trade();
+        trade.setId(ids.buffer.getLong(row * 8));
+        int epochDay = dates.buffer.getInt(row * 4);
+        trade.setDate(epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null);
+        trade.setEntry(entries.buffer.getDouble(row * 8));
+        trade.setExit(exits.buffer.getDouble(row * 8));
+        trade.setSize(sizes.buffer.getDouble(row * 8));
+        trade.setBalance(balances.buffer.getDouble(row * 8));
+        trade.setSymbol(decode(symbols.buffer.getInt(row * 4)));
+        trade.setSetup(decode(setups.buffer.getInt(row * 4)));
+        trade.setEntryType(decode(entryTypes.buffer.getInt(row * 4)));
+        String side = decode(sides.buffer.getInt(row * 4));
+        if (side != null) {
+            trade.setSide(side);
+        }
+        trade.setReturns(returns.buffer.getDouble(row * 8));
+        return trade;
+    }
+
+    private void writeRow(int row, Trade trade) throws IOException {
+        for (Column column : columns) {
+            column.ensureCapacity(row + 1);
+        }
+        ids.buffer.putLong(row * 8, trade.getId());
+        dates.buffer.putInt(row * 4, trade.getDate() != null ? (int) trade.getDate().toEpochDay() : NO_DATE);
+        entries.buffer.putDouble(row * 8, trade.getEntry());
+        exits.buffer.putDouble(row * 8, trade.getExit());
+        sizes.buffer.putDouble(row * 8, trade.getSize());
+        returns.buffer.putDouble(row * 8, trade.getReturns());
+        balances.buffer.putDouble(row * 8, trade.getBalance());
+        symbols.buffer.putInt(row * 4, encode(trade.getSymbol()));
+        setups.buffer.putInt(row * 4, encode(trade.getSetup()));
+        entryTypes.buffer.putInt(row * 4, encode(trade.getEntryType()));
+        sides.buffer.putInt(row * 4, encode(trade.getSide()));
+        long previous = row < rowCount ? extras.buffer.getLong(row * 8) : -1;
+        extras.buffer.putLong(row * 8, writeExtras(trade, previous));
+    }
+
+    private void removeRow(int row) throws IOException {
+        addDeadBytes(recordLength(extras.buffer.getLong(row * 8)));
+        for (Column column : columns) {
+            column.removeRow(row, rowCount);
+        }
+        setRowCount(rowCount - 1);
+    }
+
+    private void setRowCount(int count) {
+        rowCount = count;
+        meta.putInt(META_ROWS, count);
+    }
+
+    private int rowOf(long id) {
+        int low = 0;
+        int high = rowCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = ids.buffer.getLong(mid * 8);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private long lastId() {
+        return rowCount > 0 ? ids.buffer.getLong((rowCount - 1) * 8) : 0;
+    }
+
+    // Keeps the id column sorted for rowOf()
+    private void ensureAppendableId(Trade trade) {
+        if (trade.getId() <= lastId()) {
+            trade.setId(0);
+            assignId(trade);
+        }
+    }
+
+    // ---- Variable-length data ----
+
+    // Overwrites the row's previous details when the new ones fit, otherwise appends them
+    private long writeExtras(Trade trade, long previous) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, trade.getDuration());
+        writeString(out, trade.getNotes());
+        List<String> images = trade.getImages() != null ? trade.getImages() : Collections.emptyList();
+        out.writeInt(images.size());
+        for (String image : images) {
+            writeString(out, image);
+        }
+        out.flush();
+
+        ByteBuffer record = ByteBuffer.allocate(4 + bytes.size());
+        record.putInt(bytes.size());
+        record.put(bytes.toByteArray());
+        record.flip();
+
+        long offset = extrasEnd;
+        if (previous >= 0) {
+            int length = recordLength(previous);
+            if (record.limit() <= length) {
+                offset = previous;
+                addDeadBytes(length - record.limit());
+            } else {
+                addDeadBytes(length);
+            }
+        }
+        while (record.hasRemaining()) {
+            extrasChannel.write(record, offset + record.position());
+        }
+        if (offset == extrasEnd) {
+            extrasEnd += record.limit();
+            meta.putLong(META_EXTRAS_END, extrasEnd);
+        }
+        return offset;
+    }
+
+    // Size of the details record at the offset, header included
+    private int recordLength(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readAt(header, offset);
+        return 4 + header.getInt(0);
+    }
+
+    private void addDeadBytes(long bytes) {
+        deadBytes = (int) Math.min(Integer.MAX_VALUE, deadBytes + bytes);
+        meta.putInt(META_DEAD_BYTES, deadBytes);
+    }
+
+    private void readExtras(long offset, Trade trade) {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readAt(header, offset);
+            ByteBuffer in = ByteBuffer.allocate(header.getInt(0));
+            readAt(in, offset + 4);
+            in.flip();
+
+            trade.setDuration(readString(in));
+            trade.setNotes(readString(in));
+            int imageCount = in.getInt();
+            List<String> images = new ArrayList<>(imageCount);
+            for (int i = 0; i < imageCount; i++) {
+                images.add(readString(in));
+            }
+            trade.setImages(images);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error reading trade details at offset " + offset + ": " + e.getMessage());
+        }
+    }
+
+    private void readAt(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (extrasChannel.read(target, position + target.position()) < 0) {
+                throw new EOFException("Truncated trade details file");
+            }
+        }
+    }
+
+    private int encode(String value) throws IOException {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codes.put(value, code);
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(4 + bytes.length);
+            record.putInt(bytes.length).put(bytes).flip();
+            dictionaryChannel.write(record, dictionaryChannel.size());
+        }
+        return code;
+    }
+
+    private String decode(int code) {
+        return code != NO_CODE && code < dictionary.size() ? dictionary.get(code) : null;
+    }
+
+    private void loadDictionary() throws IOException {
+        dictionary.clear();
+        codes.clear();
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(new File(dir, DICTIONARY_FILE).toPath()));
+        while (in.remaining() >= 4) {
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            codes.put(value, dictionary.size());
+            dictionary.add(value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private FileChannel openChannel(String name) throws IOException {
+        FileChannel channel = readOnly
+                ? FileChannel.open(new File(dir, name).toPath(), StandardOpenOption.READ)
+                : FileChannel.open(new File(dir, name).toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channels.add(channel);
+        return channel;
+    }
+
+    private final class Column {
+        private final FileChannel channel;
+        private final int width;
+        // Mapped from the channel, or a heap copy for snapshot()
+        private ByteBuffer buffer;
+
+        Column(String name, int width) throws IOException {
+            this.channel = openChannel(name);
+            this.width = width;
+            if (readOnly) {
+                if (channel.size() < (long) rowCount * width) {
+                    throw new EOFException("Truncated column file " + name);
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) rowCount * width);
+                return;
+            }
+            long rows = Math.max(MIN_CAPACITY, Math.max(rowCount, channel.size() / width));
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, rows * width);
+        }
+
+        Column(int width, ByteBuffer buffer) {
+            this.channel = null;
+            this.width = width;
+            this.buffer = buffer;
+        }
+
+        Column copy(int rows) {
+            ByteBuffer copy = ByteBuffer.allocate(rows * width);
+            copy.put(0, buffer, 0, rows * width);
+            return new Column(width, copy);
+        }
+
+        void force() {
+            ((MappedByteBuffer) buffer).force();
+        }
+
+        void ensureCapacity(int rows) throws IOException {
+            if ((long) rows * width > buffer.capacity()) {
+                long newRows = Math.max(rows, (long) buffer.capacity() / width * 3 / 2);
+                force();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newRows * width);
+            }
+        }
+
+        // Shifts the rows after the removed one down by one slot
+        void removeRow(int row, int count) {
+            int length = (count - row - 1) * width;
+            if (length > 0) {
+                buffer.put(row * width, buffer, (row + 1) * width, length);
+            }
+        }
+    }
+
+    /**
+     * Lazy list view over the columns. Trade objects are cached weakly by id
+     * so a row keeps the same instance while the UI holds on to it.
+     */
+    private final class TradeList extends ObservableListBase<Trade> implements IndexedList {
+        private final Map<Long, TradeRef> cache = new HashMap<>();
+        private final ReferenceQueue<Trade> collected = new ReferenceQueue<>();
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+
+        @Override
+        public Trade get(int index) {
+            Objects.checkIndex(index, rowCount);
+            long id = ids.buffer.getLong(index * 8);
+            TradeRef ref = cache.get(id);
+            Trade trade = ref != null ? ref.get() : null;
+            if (trade == null) {
+                expungeCollected();
+                trade = readRow(index);
+                remember(trade);
+            }
+            return trade;
+        }
+
+        @Override
+        public Trade findById(long id) {
+            int row = rowOf(id);
+            return row >= 0 ? get(row) : null;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (!(o instanceof Trade)) {
+                return -1;
+            }
+            int row = rowOf(((Trade) o).getId());
+            return row >= 0 && get(row) == o ? row : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return indexOf(o);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public boolean add(Trade trade) {
+            return addAll(Collections.singletonList(trade));
+        }
+
+        @Override
+        public void add(int index, Trade trade) {
+            if (index != rowCount) {
+                throw new UnsupportedOperationException("Trades can only be appended to the column store");
+            }
+            add(trade);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Trade> added) {
+            if (added.isEmpty()) {
+                return false;
+            }
+            int from = rowCount;
+            try {
+                for (Trade trade : added) {
+                    ensureAppendableId(trade);
+                    writeRow(rowCount, trade);
+                    setRowCount(rowCount + 1);
+                    remember(trade);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            beginChange();
+            nextAdd(from, rowCount);
+            endChange();
+            return true;
+        }
+
+        @Override
+        public Trade set(int index, Trade trade) {
+            Trade old = get(index);
+            if (trade.getId() != old.getId()) {
+                throw new IllegalArgumentException("Replacing a row must keep the trade id");
+            }
+            try {
+                writeRow(index, trade);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            remember(trade);
+            beginChange();
+            nextSet(index, old);
+            endChange();
+            return old;
+        }
+
+        @Override
+        public Trade remove(int index) {
+            Trade old = get(index);
+            try {
+                removeRow(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            cache.remove(old.getId());
+            beginChange();
+            nextRemove(index, old);
+            endChange();
+            return old;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int index = indexOf(o);
+            if (index < 0) {
+                return false;
+            }
+            remove(index);
+            return true;
+        }
+
+        @Override
+        public boolean setAll(Collection<? extends Trade> replacement) {
+            List<Trade> removed = new ArrayList<>(this);
+            List<Trade> sorted = new ArrayList<>(replacement);
+            sorted.sort(Comparator.comparingLong(Trade::getId));
+
+            setRowCount(0);
+            cache.clear();
+            extrasEnd = 0;
+            deadBytes = 0;
+            meta.putInt(META_DEAD_BYTES, 0);
+            try {
+                extrasChannel.truncate(0);
+                for (Trade trade : sorted) {
+                    ensureAppendableId(trade);
+                    writeRow(rowCount, trade);
+                    setRowCount(rowCount + 1);
+                    remember(trade);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            beginChange();
+            if (!removed.isEmpty()) {
+                nextRemove(0, removed);
+            }
+            if (rowCount > 0) {
+                nextAdd(0, rowCount);
+            }
+            endChange();
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            setAll(Collections.emptyList());
+        }
+
+        private void remember(Trade trade) {
+            cache.put(trade.getId(), new TradeRef(trade, collected));
+        }
+
+        private void expungeCollected() {
+            TradeRef ref;
+            while ((ref = (TradeRef) collected.poll()) != null) {
+                if (cache.get(ref.id) == ref) {
+                    cache.remove(ref.id);
+                }
+            }
+        }
+    }
+
+    private static final class TradeRef extends WeakReference<Trade> {
+        private final long id;
+
+        TradeRef(Trade trade, ReferenceQueue<Trade> queue) {
+            super(trade, queue);
+            this.id = trade.getId();
+        }
+    }
+}
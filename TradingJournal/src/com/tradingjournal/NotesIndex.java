@@ -0,0 +1,463 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.JournalSettings;
+import com.tradingjournal.TradingJournalApp.SetupEntryDetails;
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+/**
+ * Full-text index over trade notes, setup and entry type notes and the trade
+ * fields shown in the table.
+ *
+ * Text is split into lower-case words and each word maps to the documents it
+ * occurs in together with its positions, so a query only touches the
+ * postings of the words it contains. Words are kept sorted, which makes a
+ * prefix query a range of the dictionary. Trades are indexed as they are
+ * added or edited; setup and entry type notes are indexed when the setup or
+ * entry type is added and again when its notes are saved.
+ *
+ * Query syntax: words are ANDed, "quoted words" must appear as a phrase and
+ * a trailing * makes a word a prefix. The last word of the query is also
+ * treated as a prefix so results follow the text as it is typed.
+ *
+ * The postings belong to the trade search thread. Changes arrive on the FX
+ * thread, which only copies out the fields to index and queues the work, one
+ * task per batch of changes; tokenizing, the first build and search() all
+ * run on the search thread, in order, so a search sees every earlier change.
+ */
+public class NotesIndex extends TradeAggregate<NotesIndex.Document> {
+    // Keeps phrases from matching across the end of one field and the start of the next
+    private static final int FIELD_GAP = 2;
+
+    public enum Kind {
+        TRADE, SETUP, ENTRY_TYPE
+    }
+
+    static final class Document {
+        final int docId;
+        final Kind kind;
+        final long tradeId;
+        final String name;
+        // Set on the search thread once the document is indexed
+        String[] terms = new String[0];
+
+        Document(int docId, Kind kind, long tradeId, String name) {
+            this.docId = docId;
+            this.kind = kind;
+            this.tradeId = tradeId;
+            this.name = name;
+        }
+    }
+
+    /** Documents matching a query, grouped by what they describe. */
+    public static final class Result {
+        private final BitSet tradeIds = new BitSet();
+        private final Set<String> setups = new HashSet<>();
+        private final Set<String> entryTypes = new HashSet<>();
+        private int count;
+
+        public boolean containsTrade(long tradeId) {
+            return tradeId < Integer.MAX_VALUE && tradeIds.get((int) tradeId);
+        }
+
+        // Lower-cased names of the setups whose name or notes matched
+        public Set<String> getSetups() {
+            return setups;
+        }
+
+        public Set<String> getEntryTypes() {
+            return entryTypes;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+    }
+
+    /**
+     * Documents containing one word, in ascending document order, each with
+     * the ascending positions of the word in it. Document ids only grow, so
+     * indexing appends and a re-indexed trade moves to the end.
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[][] positions = new int[2][];
+        int size;
+
+        void add(int docId, int position) {
+            if (size > 0 && docs[size - 1] == docId) {
+                int[] current = positions[size - 1];
+                int[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = position;
+                positions[size - 1] = grown;
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            docs[size] = docId;
+            positions[size] = new int[] {position};
+            size++;
+        }
+
+        void remove(int docId) {
+            int index = Arrays.binarySearch(docs, 0, size, docId);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+            positions[--size] = null;
+        }
+
+        int[] positionsOf(int docId) {
+            int index = Arrays.binarySearch(docs, 0, size, docId);
+            return index < 0 ? null : positions[index];
+        }
+
+        void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) {
+                set.set(docs[i]);
+            }
+        }
+    }
+
+    private final Executor searchThread;
+
+    // Search thread only
+    private final Map<String, Postings> postings = new HashMap<>();
+    // Sorted copy of the dictionary for prefix lookups; only changes when a word appears or disappears
+    private final NavigableSet<String> words = new TreeSet<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+
+    // FX thread only
+    private final Map<SetupEntryDetails, Document> items = new IdentityHashMap<>();
+    private int nextDocId;
+    private List<Runnable> pending = new ArrayList<>();
+
+    public NotesIndex(Executor searchThread) {
+        this.searchThread = searchThread;
+    }
+
+    @Override
+    protected Document add(Trade trade) {
+        return index(Kind.TRADE, trade.getId(), null,
+                trade.getSymbol(), trade.getSide(), trade.getSetup(), trade.getEntryType(), trade.getNotes());
+    }
+
+    @Override
+    protected void remove(Document document) {
+        pending.add(() -> unindex(document));
+    }
+
+    @Override
+    protected void reset() {
+        pending.add(() -> {
+            postings.clear();
+            words.clear();
+            documents.clear();
+        });
+        // Setup and entry type notes live in the settings, not in the trade list
+        Map<SetupEntryDetails, Kind> kept = new IdentityHashMap<>();
+        for (Map.Entry<SetupEntryDetails, Document> entry : items.entrySet()) {
+            kept.put(entry.getKey(), entry.getValue().kind);
+        }
+        items.clear();
+        kept.forEach(this::queueItem);
+    }
+
+    @Override
+    public void rebuild(List<Trade> trades) {
+        super.rebuild(trades);
+        int count = size();
+        List<Runnable> batch = takePending();
+        searchThread.execute(() -> {
+            long start = System.nanoTime();
+            batch.forEach(Runnable::run);
+            System.out.println("Indexed notes of " + count + " trades (" + postings.size() + " words) in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        });
+    }
+
+    @Override
+    protected void changed() {
+        flush();
+    }
+
+    public void indexSettings(JournalSettings settings) {
+        for (Document document : items.values()) {
+            pending.add(() -> unindex(document));
+        }
+        items.clear();
+        if (settings.getSetupDetails() != null) {
+            for (SetupEntryDetails item : settings.getSetupDetails()) {
+                queueItem(item, Kind.SETUP);
+            }
+        }
+        if (settings.getEntryTypeDetails() != null) {
+            for (SetupEntryDetails item : settings.getEntryTypeDetails()) {
+                queueItem(item, Kind.ENTRY_TYPE);
+            }
+        }
+        flush();
+    }
+
+    // Re-indexes one setup or entry type after it was added or its notes were saved
+    public void indexItem(SetupEntryDetails item, Kind kind) {
+        queueItem(item, kind);
+        flush();
+    }
+
+    public void removeItem(SetupEntryDetails item) {
+        Document previous = items.remove(item);
+        if (previous != null) {
+            pending.add(() -> unindex(previous));
+            flush();
+        }
+    }
+
+    private void queueItem(SetupEntryDetails item, Kind kind) {
+        Document previous = items.remove(item);
+        if (previous != null) {
+            pending.add(() -> unindex(previous));
+        }
+        items.put(item, index(kind, -1, item.getName(), item.getName(), item.getNotes()));
+    }
+
+    private List<Runnable> takePending() {
+        List<Runnable> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void flush() {
+        if (!pending.isEmpty()) {
+            List<Runnable> batch = takePending();
+            searchThread.execute(() -> batch.forEach(Runnable::run));
+        }
+    }
+
+    // Runs on the search thread
+    public Result search(String query) {
+        Result result = new Result();
+        List<Clause> clauses = parse(query);
+        if (clauses.isEmpty()) {
+            return result;
+        }
+
+        BitSet matches = null;
+        for (Clause clause : clauses) {
+            BitSet docs = clause.evaluate();
+            if (matches == null) {
+                matches = docs;
+            } else {
+                matches.and(docs);
+            }
+            if (matches.isEmpty()) {
+                return result;
+            }
+        }
+
+        for (int docId = matches.nextSetBit(0); docId >= 0; docId = matches.nextSetBit(docId + 1)) {
+            Document document = documents.get(docId);
+            switch (document.kind) {
+                case TRADE:
+                    if (document.tradeId >= 0 && document.tradeId < Integer.MAX_VALUE) {
+                        result.tradeIds.set((int) document.tradeId);
+                    }
+                    break;
+                case SETUP:
+                    result.setups.add(TradeSearch.normalize(document.name));
+                    break;
+                case ENTRY_TYPE:
+                    result.entryTypes.add(TradeSearch.normalize(document.name));
+                    break;
+            }
+            result.count++;
+        }
+        return result;
+    }
+
+    // Takes the document id and the field values here and leaves the tokenizing to the search thread
+    private Document index(Kind kind, long tradeId, String name, String... fields) {
+        Document document = new Document(nextDocId++, kind, tradeId, name);
+        pending.add(() -> index(document, fields));
+        return document;
+    }
+
+    private void index(Document document, String[] fields) {
+        int docId = document.docId;
+        List<String> terms = new ArrayList<>();
+        int position = 0;
+        for (String field : fields) {
+            for (String word : tokenize(field)) {
+                Postings list = postings.get(word);
+                if (list == null) {
+                    list = new Postings();
+                    postings.put(word, list);
+                    words.add(word);
+                }
+                if (list.size == 0 || list.docs[list.size - 1] != docId) {
+                    terms.add(word);
+                }
+                list.add(docId, position++);
+            }
+            position += FIELD_GAP;
+        }
+        document.terms = terms.toArray(new String[0]);
+        documents.put(docId, document);
+    }
+
+    private void unindex(Document document) {
+        documents.remove(document.docId);
+        for (String term : document.terms) {
+            Postings list = postings.get(term);
+            if (list != null) {
+                list.remove(document.docId);
+                if (list.size == 0) {
+                    postings.remove(term);
+                    words.remove(term);
+                }
+            }
+        }
+    }
+
+    // Splits text into lower-case runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(TradeSearch.normalize(text.substring(start, i)));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private interface Clause {
+        BitSet evaluate();
+    }
+
+    private List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        String text = query.trim();
+        boolean typing = !query.endsWith(" ") && !text.endsWith("\"");
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = text.length();
+                }
+                List<String> words = tokenize(text.substring(i + 1, end));
+                if (words.size() == 1) {
+                    clauses.add(word(words.get(0), false));
+                } else if (!words.isEmpty()) {
+                    clauses.add(phrase(words));
+                }
+                i = end + 1;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '"') {
+                    end++;
+                }
+                String raw = text.substring(i, end);
+                boolean prefix = raw.endsWith("*") || (end == text.length() && typing);
+                for (String word : tokenize(raw)) {
+                    clauses.add(word(word, prefix));
+                }
+                i = end;
+            }
+        }
+        return clauses;
+    }
+
+    private Clause word(String word, boolean prefix) {
+        return () -> {
+            BitSet docs = new BitSet();
+            if (!prefix) {
+                Postings list = postings.get(word);
+                if (list != null) {
+                    list.addTo(docs);
+                }
+                return docs;
+            }
+            for (String match : words.subSet(word, true, word + Character.MAX_VALUE, false)) {
+                postings.get(match).addTo(docs);
+            }
+            return docs;
+        };
+    }
+
+    private Clause phrase(List<String> phrase) {
+        return () -> {
+            BitSet docs = new BitSet();
+            Postings[] lists = new Postings[phrase.size()];
+            Postings smallest = null;
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(phrase.get(i));
+                if (lists[i] == null) {
+                    return docs;
+                }
+                if (smallest == null || lists[i].size < smallest.size) {
+                    smallest = lists[i];
+                }
+            }
+            for (int i = 0; i < smallest.size; i++) {
+                if (containsPhrase(lists, smallest.docs[i])) {
+                    docs.set(smallest.docs[i]);
+                }
+            }
+            return docs;
+        };
+    }
+
+    private static boolean containsPhrase(Postings[] lists, int docId) {
+        int[][] positions = new int[lists.length][];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = lists[i].positionsOf(docId);
+            if (positions[i] == null) {
+                return false;
+            }
+        }
+        outer:
+        for (int first : positions[0]) {
+            for (int i = 1; i < positions.length; i++) {
+                if (Arrays.binarySearch(positions[i], first + i) < 0) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
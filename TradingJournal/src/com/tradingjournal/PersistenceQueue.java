@@ -0,0 +1,184 @@
+package com.tradingjournal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single background writer for everything the journal persists.
+ *
+ * DataManager hands its disk writes to this queue instead of running them on
+ * the JavaFX thread. The writer waits a few milliseconds after the first
+ * write of a burst and then runs everything queued so far as one flush.
+ * Writes submitted under the same key replace each other while they are
+ * still pending, so repeated saves of one trade or of the settings end up as
+ * a single write.
+ *
+ * flush() blocks until every write submitted before the call has run; it is
+ * the barrier used on account switch and on exit.
+ */
+public class PersistenceQueue {
+
+    public interface Write {
+        void run() throws Exception;
+    }
+
+    private static final long COALESCE_WINDOW_MS = 15;
+
+    private final Object lock = new Object();
+    private final Map<Object, Write> pending = new LinkedHashMap<>();
+    private final Thread writer;
+    private Runnable listener;
+
+    private long submitted;
+    private long completed;
+    private boolean flushing;
+
+    // Metrics
+    private int maxQueueDepth;
+    private long flushCount;
+    private long writeCount;
+    private long coalescedCount;
+    private long lastFlushNanos;
+    private long totalFlushNanos;
+
+    public PersistenceQueue() {
+        writer = new Thread(this::runWriter, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Called from the writer thread whenever the saving state or metrics change
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    public void submit(Write write) {
+        submit(new Object(), write);
+    }
+
+    public void submit(Object key, Write write) {
+        synchronized (lock) {
+            // Re-inserting moves the write behind anything queued after the one it replaces
+            if (pending.remove(key) != null) {
+                coalescedCount++;
+            }
+            pending.put(key, write);
+            submitted++;
+            maxQueueDepth = Math.max(maxQueueDepth, pending.size());
+            lock.notifyAll();
+        }
+        fireChanged();
+    }
+
+    public void flush() {
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        synchronized (lock) {
+            long target = submitted;
+            lock.notifyAll();
+            while (completed < target) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            List<Write> batch;
+            long upTo;
+            try {
+                synchronized (lock) {
+                    while (pending.isEmpty()) {
+                        lock.wait();
+                    }
+                }
+                // Let the rest of a burst arrive so it is written in one go
+                Thread.sleep(COALESCE_WINDOW_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            synchronized (lock) {
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                upTo = submitted;
+                flushing = true;
+            }
+
+            long start = System.nanoTime();
+            for (Write write : batch) {
+                try {
+                    write.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    System.err.println("Error in background write: " + e.getMessage());
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            synchronized (lock) {
+                completed = upTo;
+                flushing = false;
+                flushCount++;
+                writeCount += batch.size();
+                lastFlushNanos = elapsed;
+                totalFlushNanos += elapsed;
+                lock.notifyAll();
+            }
+            fireChanged();
+        }
+    }
+
+    private void fireChanged() {
+        Runnable current = listener;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    public boolean isSaving() {
+        synchronized (lock) {
+            return flushing || !pending.isEmpty();
+        }
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        synchronized (lock) {
+            return maxQueueDepth;
+        }
+    }
+
+    public double getLastFlushMillis() {
+        synchronized (lock) {
+            return lastFlushNanos / 1_000_000.0;
+        }
+    }
+
+    public double getAverageFlushMillis() {
+        synchronized (lock) {
+            return flushCount == 0 ? 0 : totalFlushNanos / 1_000_000.0 / flushCount;
+        }
+    }
+
+    public String describeMetrics() {
+        synchronized (lock) {
+            return String.format("%d flushes, %d writes (%d coalesced), last flush %.1f ms, avg %.1f ms, max queue depth %d",
+                    flushCount, writeCount, coalescedCount, lastFlushNanos / 1_000_000.0,
+                    flushCount == 0 ? 0.0 : totalFlushNanos / 1_000_000.0 / flushCount, maxQueueDepth);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tradingjournal;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Date-sorted returns with prefix sums, used to draw cumulative P&L for any
+ * date range without filtering or sorting trades.
+ *
+ * The arrays are rebuilt from the date index, which is already in date
+ * order, the first time they are needed after the trades changed. A range
+ * is then two binary searches, and the running total at any trade inside it
+ * is a difference of two prefix sums.
+ */
+public class PnlTimeline {
+
+    /**
+     * A date range of the timeline; cumulative values start from zero at the
+     * range start. It keeps the arrays it was cut from, so it stays valid
+     * after the timeline is rebuilt.
+     */
+    public static final class Range {
+        private final long[] epochDays;
+        private final double[] prefix;
+        private final int from;
+        private final int to;
+
+        Range(long[] epochDays, double[] prefix, int from, int to) {
+            this.epochDays = epochDays;
+            this.prefix = prefix;
+            this.from = from;
+            this.to = to;
+        }
+
+        public int size() {
+            return to - from;
+        }
+
+        public long getEpochDay(int i) {
+            return epochDays[from + i];
+        }
+
+        public LocalDate getDate(int i) {
+            return LocalDate.ofEpochDay(epochDays[from + i]);
+        }
+
+        // Running P&L after the i-th trade of the range
+        public double getCumulative(int i) {
+            return prefix[from + i + 1] - prefix[from];
+        }
+
+        public double getNetReturns() {
+            return prefix[to] - prefix[from];
+        }
+
+        // Position of the first trade in the range dated on or after the given day
+        public int indexOf(long epochDay) {
+            return Math.min(Math.max(lowerBound(epochDays, epochDay), from), to) - from;
+        }
+    }
+
+    private final DateIndex dateIndex;
+    private long builtVersion = -1;
+    private long[] epochDays = new long[0];
+    private double[] prefix = new double[1];
+
+    public PnlTimeline(DateIndex dateIndex) {
+        this.dateIndex = dateIndex;
+    }
+
+    public Range all() {
+        ensureBuilt();
+        return new Range(epochDays, prefix, 0, epochDays.length);
+    }
+
+    // Trades dated between the two days, both inclusive; null means unbounded
+    public Range range(LocalDate start, LocalDate end) {
+        ensureBuilt();
+        int from = start == null ? 0 : lowerBound(epochDays, start.toEpochDay());
+        int to = end == null ? epochDays.length : lowerBound(epochDays, end.toEpochDay() + 1);
+        return new Range(epochDays, prefix, from, Math.max(from, to));
+    }
+
+    private static int lowerBound(long[] epochDays, long epochDay) {
+        int index = Arrays.binarySearch(epochDays, epochDay);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // Several trades can share a day, step back to the first of them
+        while (index > 0 && epochDays[index - 1] == epochDay) {
+            index--;
+        }
+        return index;
+    }
+
+    private void ensureBuilt() {
+        if (builtVersion == dateIndex.getVersion()) {
+            return;
+        }
+        int count = 0;
+        for (DateIndex.Day day : dateIndex.getAllDays().values()) {
+            count += day.getTradeCount();
+        }
+        long[] days = new long[count];
+        double[] sums = new double[count + 1];
+        int i = 0;
+        for (DateIndex.Day day : dateIndex.getAllDays().values()) {
+            long epochDay = day.getDate().toEpochDay();
+            for (int j = 0; j < day.getTradeCount(); j++) {
+                days[i] = epochDay;
+                sums[i + 1] = sums[i] + day.getReturns(j);
+                i++;
+            }
+        }
+        epochDays = days;
+        prefix = sums;
+        builtVersion = dateIndex.getVersion();
+    }
+}
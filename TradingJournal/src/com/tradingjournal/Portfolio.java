@@ -0,0 +1,474 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.JournalSettings;
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import javafx.concurrent.Task;
+
+/**
+ * Read-only consolidation of every account: combined P&L, equity curve and
+ * per-symbol exposure.
+ *
+ * Accounts are read in parallel, each on its own fork-join task, straight
+ * from their files without creating, repairing or migrating anything;
+ * accounts that are already loaded are passed in as snapshots instead, a
+ * column store's without notes and images. The trades of all
+ * accounts are then aggregated by splitting them into ranges, each range
+ * summarising itself into daily P&L, per-account and per-symbol partials
+ * that are merged pairwise on the way back up.
+ */
+public class Portfolio extends Task<Portfolio.Summary> {
+    // Trades per leaf; large enough that merging the daily arrays stays cheap
+    private static final int SPLIT_THRESHOLD = 20_000;
+    private static final String SETTINGS_FILE = "settings.dat";
+
+    public static final class AccountSummary {
+        private final String name;
+        private final double startingBalance;
+        private final String error;
+        private int trades;
+        private int wins;
+        private double netReturns;
+
+        AccountSummary(String name, double startingBalance, String error) {
+            this.name = name;
+            this.startingBalance = startingBalance;
+            this.error = error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getStartingBalance() {
+            return startingBalance;
+        }
+
+        // Why the account could not be read, or null
+        public String getError() {
+            return error;
+        }
+
+        public int getTrades() {
+            return trades;
+        }
+
+        public double getWinRate() {
+            return trades == 0 ? 0 : wins * 100.0 / trades;
+        }
+
+        public double getNetReturns() {
+            return netReturns;
+        }
+    }
+
+    public static final class SymbolExposure {
+        private final String symbol;
+        private int trades;
+        private int longTrades;
+        private int shortTrades;
+        private double volume;
+        private double notional;
+        private double netReturns;
+
+        SymbolExposure(String symbol) {
+            this.symbol = symbol;
+        }
+
+        void add(Trade trade) {
+            trades++;
+            if (trade.getSideValue() == Trade.Side.LONG) {
+                longTrades++;
+            } else if (trade.getSideValue() == Trade.Side.SHORT) {
+                shortTrades++;
+            }
+            volume += trade.getSize();
+            notional += trade.getSize() * trade.getEntry();
+            netReturns += trade.getReturns();
+        }
+
+        void merge(SymbolExposure other) {
+            trades += other.trades;
+            longTrades += other.longTrades;
+            shortTrades += other.shortTrades;
+            volume += other.volume;
+            notional += other.notional;
+            netReturns += other.netReturns;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public int getTrades() {
+            return trades;
+        }
+
+        public int getLongTrades() {
+            return longTrades;
+        }
+
+        public int getShortTrades() {
+            return shortTrades;
+        }
+
+        public double getVolume() {
+            return volume;
+        }
+
+        // Size times entry price, summed over the trades
+        public double getNotional() {
+            return notional;
+        }
+
+        public double getNetReturns() {
+            return netReturns;
+        }
+    }
+
+    public static final class Summary {
+        private final List<AccountSummary> accounts;
+        private final List<SymbolExposure> symbols;
+        private final long firstDay;
+        private final double[] equity;
+        private final double startingBalance;
+        private final int trades;
+        private final int wins;
+        private final double netReturns;
+        private final double maxDrawdown;
+        private final long elapsedMillis;
+
+        Summary(List<AccountSummary> accounts, List<SymbolExposure> symbols, long firstDay, double[] equity,
+                double startingBalance, int trades, int wins, double netReturns, long elapsedMillis) {
+            this.accounts = accounts;
+            this.symbols = symbols;
+            this.firstDay = firstDay;
+            this.equity = equity;
+            this.startingBalance = startingBalance;
+            this.trades = trades;
+            this.wins = wins;
+            this.netReturns = netReturns;
+            this.elapsedMillis = elapsedMillis;
+            double peak = startingBalance;
+            double drawdown = 0;
+            for (double value : equity) {
+                peak = Math.max(peak, value);
+                drawdown = Math.max(drawdown, peak - value);
+            }
+            this.maxDrawdown = drawdown;
+        }
+
+        public List<AccountSummary> getAccounts() {
+            return accounts;
+        }
+
+        // Largest notional first
+        public List<SymbolExposure> getSymbols() {
+            return symbols;
+        }
+
+        // Equity at the end of each calendar day from the first trade to the last
+        public int getDays() {
+            return equity.length;
+        }
+
+        public long getEpochDay(int day) {
+            return firstDay + day;
+        }
+
+        public double getEquity(int day) {
+            return equity[day];
+        }
+
+        public double getStartingBalance() {
+            return startingBalance;
+        }
+
+        public int getTrades() {
+            return trades;
+        }
+
+        public double getWinRate() {
+            return trades == 0 ? 0 : wins * 100.0 / trades;
+        }
+
+        public double getNetReturns() {
+            return netReturns;
+        }
+
+        public double getMaxDrawdown() {
+            return maxDrawdown;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    // What is known about one account before its trades are read
+    public static final class Source {
+        final Account account;
+        final File directory;
+        // Trades of an account that is loaded already, copied on the FX thread and read here; null to read from disk
+        final Callable<List<Trade>> snapshot;
+        final JournalSettings settings;
+
+        public Source(Account account, File directory, Callable<List<Trade>> snapshot, JournalSettings settings) {
+            this.account = account;
+            this.directory = directory;
+            this.snapshot = snapshot;
+            this.settings = settings;
+        }
+    }
+
+    private static final class Loaded {
+        final AccountSummary summary;
+        final List<Trade> trades;
+
+        Loaded(AccountSummary summary, List<Trade> trades) {
+            this.summary = summary;
+            this.trades = trades;
+        }
+    }
+
+    private final List<Source> sources;
+
+    public Portfolio(List<Source> sources) {
+        this.sources = sources;
+    }
+
+    @Override
+    protected Summary call() throws Exception {
+        long start = System.currentTimeMillis();
+        int threads = Math.max(1, Math.min(sources.size(), Runtime.getRuntime().availableProcessors() * 2));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            updateMessage("Reading " + sources.size() + " accounts...");
+            List<ForkJoinTask<Loaded>> reads = new ArrayList<>();
+            for (Source source : sources) {
+                reads.add(pool.submit(() -> read(source)));
+            }
+            List<Loaded> loaded = new ArrayList<>();
+            for (int i = 0; i < reads.size(); i++) {
+                loaded.add(reads.get(i).join());
+                updateProgress(i + 1, reads.size() + 1);
+                if (isCancelled()) {
+                    return null;
+                }
+            }
+            long read = System.currentTimeMillis() - start;
+
+            updateMessage("Aggregating...");
+            Summary summary = pool.invoke(new Aggregate(loaded)).toSummary(loaded, start);
+            updateProgress(1, 1);
+            System.out.println("Portfolio of " + loaded.size() + " accounts and " + summary.getTrades() + " trades: read in "
+                    + read + " ms, aggregated in " + (System.currentTimeMillis() - start - read) + " ms on " + threads + " threads");
+            return summary;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Loaded read(Source source) {
+        JournalSettings settings = source.settings;
+        try {
+            if (settings == null) {
+                settings = readSettings(new File(source.directory, SETTINGS_FILE));
+            }
+            List<Trade> trades = source.snapshot != null ? source.snapshot.call() : readTrades(source.directory, settings);
+            return new Loaded(new AccountSummary(source.account.getName(), settings.getAccountBalance(), null), trades);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println("Error reading account " + source.account.getName() + " for the portfolio: " + e.getMessage());
+            double balance = settings != null ? settings.getAccountBalance() : 0;
+            return new Loaded(new AccountSummary(source.account.getName(), balance, e.getMessage()), Collections.emptyList());
+        }
+    }
+
+    private static JournalSettings readSettings(File file) throws Exception {
+        if (!AtomicFiles.exists(file)) {
+            return new JournalSettings();
+        }
+        if (file.exists() && JournalCodec.isJavaSerialized(file)) {
+            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+                return (JournalSettings) in.readObject();
+            }
+        }
+        return JournalCodec.readSettings(file);
+    }
+
+    // Reads whichever engine holds the trades; an account awaiting migration still has them in the other one
+    private static List<Trade> readTrades(File directory, JournalSettings settings) throws Exception {
+        MappedTradeStore mapped = new MappedTradeStore(directory);
+        TradeLog log = new TradeLog(directory);
+        if (!mapped.exists() || (!settings.isUseMappedStorage() && log.exists())) {
+            return log.exists() ? log.read() : Collections.emptyList();
+        }
+        return mapped.read();
+    }
+
+    /** Partial result of a range of trades, indexed by account and by day since the first trade. */
+    private static final class Partial {
+        final int[] trades;
+        final int[] wins;
+        final double[] returns;
+        final double[] daily;
+        final Map<String, SymbolExposure> symbols = new HashMap<>();
+        final long firstDay;
+
+        Partial(int accounts, long firstDay, int days) {
+            this.firstDay = firstDay;
+            trades = new int[accounts];
+            wins = new int[accounts];
+            returns = new double[accounts];
+            daily = new double[days];
+        }
+
+        Partial merge(Partial other) {
+            for (int i = 0; i < trades.length; i++) {
+                trades[i] += other.trades[i];
+                wins[i] += other.wins[i];
+                returns[i] += other.returns[i];
+            }
+            for (int i = 0; i < daily.length; i++) {
+                daily[i] += other.daily[i];
+            }
+            for (SymbolExposure exposure : other.symbols.values()) {
+                SymbolExposure mine = symbols.get(exposure.symbol);
+                if (mine == null) {
+                    symbols.put(exposure.symbol, exposure);
+                } else {
+                    mine.merge(exposure);
+                }
+            }
+            return this;
+        }
+
+        Summary toSummary(List<Loaded> loaded, long start) {
+            List<AccountSummary> accounts = new ArrayList<>();
+            double startingBalance = 0;
+            int totalTrades = 0;
+            int totalWins = 0;
+            double totalReturns = 0;
+            for (int i = 0; i < loaded.size(); i++) {
+                AccountSummary account = loaded.get(i).summary;
+                account.trades = trades[i];
+                account.wins = wins[i];
+                account.netReturns = returns[i];
+                accounts.add(account);
+                startingBalance += account.startingBalance;
+                totalTrades += trades[i];
+                totalWins += wins[i];
+                totalReturns += returns[i];
+            }
+            double[] equity = new double[daily.length];
+            double running = startingBalance;
+            for (int i = 0; i < daily.length; i++) {
+                running += daily[i];
+                equity[i] = running;
+            }
+            List<SymbolExposure> exposures = new ArrayList<>(symbols.values());
+            exposures.sort(Comparator.comparingDouble((SymbolExposure e) -> Math.abs(e.notional)).reversed());
+            return new Summary(accounts, exposures, firstDay, equity, startingBalance, totalTrades, totalWins, totalReturns,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Splits the concatenated trades of all accounts into ranges. Trades are
+     * addressed through per-account offsets so nothing is copied.
+     */
+    private static final class Aggregate extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Loaded> loaded;
+        private final int[] offsets;
+        private final long firstDay;
+        private final int days;
+        private final int from;
+        private final int to;
+
+        Aggregate(List<Loaded> loaded) {
+            this.loaded = loaded;
+            this.offsets = new int[loaded.size() + 1];
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (int i = 0; i < loaded.size(); i++) {
+                List<Trade> trades = loaded.get(i).trades;
+                offsets[i + 1] = offsets[i] + trades.size();
+                for (Trade trade : trades) {
+                    LocalDate date = trade.getDate();
+                    if (date != null) {
+                        first = Math.min(first, date.toEpochDay());
+                        last = Math.max(last, date.toEpochDay());
+                    }
+                }
+            }
+            this.firstDay = first == Long.MAX_VALUE ? 0 : first;
+            this.days = first == Long.MAX_VALUE ? 0 : (int) (last - first + 1);
+            this.from = 0;
+            this.to = offsets[loaded.size()];
+        }
+
+        private Aggregate(Aggregate parent, int from, int to) {
+            this.loaded = parent.loaded;
+            this.offsets = parent.offsets;
+            this.firstDay = parent.firstDay;
+            this.days = parent.days;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                return summarise();
+            }
+            int middle = (from + to) >>> 1;
+            Aggregate left = new Aggregate(this, from, middle);
+            left.fork();
+            Partial right = new Aggregate(this, middle, to).compute();
+            return left.join().merge(right);
+        }
+
+        private Partial summarise() {
+            Partial partial = new Partial(loaded.size(), firstDay, days);
+            int account = 0;
+            while (account < loaded.size() - 1 && offsets[account + 1] <= from) {
+                account++;
+            }
+            for (int index = from; index < to; index++) {
+                while (index >= offsets[account + 1]) {
+                    account++;
+                }
+                Trade trade = loaded.get(account).trades.get(index - offsets[account]);
+                double returns = trade.getReturns();
+                partial.trades[account]++;
+                partial.returns[account] += returns;
+                if (trade.isWin()) {
+                    partial.wins[account]++;
+                }
+                if (trade.getDate() != null) {
+                    partial.daily[(int) (trade.getDate().toEpochDay() - firstDay)] += returns;
+                }
+                String symbol = trade.getSymbol() != null ? trade.getSymbol().trim().toUpperCase(Locale.ROOT) : "";
+                partial.symbols.computeIfAbsent(symbol, SymbolExposure::new).add(trade);
+            }
+            return partial;
+        }
+    }
+}
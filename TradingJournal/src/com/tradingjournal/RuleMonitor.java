@@ -0,0 +1,377 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.JournalSettings;
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Funded-challenge rules checked against the account as trades change: max
+ * daily loss, max overall drawdown, profit target, minimum trading days and
+ * max loss per trade.
+ *
+ * Daily P&L is kept in a segment tree over calendar days. Each node holds
+ * the sum of its days together with the lowest and highest running total and
+ * the largest peak-to-trough fall inside it, so adding, editing or deleting a
+ * trade updates one day and its O(log days) ancestors, and the account-wide
+ * drawdown is read from the root. That drawdown is measured between day
+ * closes, so it can be smaller than the trade-by-trade figure of the equity
+ * curve on the dashboard. Limits are percentages of the account balance;
+ * zero turns a rule off.
+ *
+ * Only closed trades are journaled, so the daily loss is the day's net
+ * realized P&L, and a trade's risk is judged by what it actually lost.
+ *
+ * The tree spans every calendar day between the first and last trade, so a
+ * mistyped year would stretch it over centuries of empty days. Dates more
+ * than 50 years back or a year ahead are counted on the nearest end of that
+ * window instead; their P&L still counts toward every total.
+ */
+public class RuleMonitor extends TradeAggregate<RuleMonitor.Entry> {
+    private static final long NO_DAY = Long.MIN_VALUE;
+    private static final int INITIAL_DAYS = 64;
+    private static final int PAST_YEARS = 50;
+    private static final int FUTURE_YEARS = 1;
+
+    public enum State {
+        OK, PENDING, PASSED, BREACHED
+    }
+
+    /** One rule's standing, ready to show. */
+    public static final class Check {
+        private final String name;
+        private final State state;
+        private final String detail;
+
+        Check(String name, State state, String detail) {
+            this.name = name;
+            this.state = state;
+            this.detail = detail;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    static final class Entry {
+        final long id;
+        final long epochDay;
+        final double returns;
+        final boolean riskBreach;
+
+        Entry(long id, long epochDay, double returns, boolean riskBreach) {
+            this.id = id;
+            this.epochDay = epochDay;
+            this.returns = returns;
+            this.riskBreach = riskBreach;
+        }
+    }
+
+    private final Supplier<JournalSettings> settings;
+    private final long firstDay = LocalDate.now().minusYears(PAST_YEARS).toEpochDay();
+    private final long lastDay = LocalDate.now().plusYears(FUTURE_YEARS).toEpochDay();
+    private final DailyLedger ledger = new DailyLedger();
+    private final TreeSet<Long> lossDays = new TreeSet<>();
+    private final Set<Long> riskBreaches = new HashSet<>();
+    // Bumped whenever the set of flagged trades changes, so the table knows to repaint
+    private long flagVersion;
+    private Runnable listener;
+
+    public RuleMonitor(Supplier<JournalSettings> settings) {
+        this.settings = settings;
+    }
+
+    public Runnable getListener() {
+        return listener;
+    }
+
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    public static boolean hasRules(JournalSettings settings) {
+        return settings.getMaxDailyLoss() > 0 || settings.getMaxDrawdown() > 0 || settings.getProfitTarget() > 0
+                || settings.getMinTradingDays() > 0 || settings.getMaxRiskMultiple() > 0;
+    }
+
+    // True for a trade that broke the per-trade limit or was taken on a day that broke the daily limit
+    public boolean isFlagged(Trade trade) {
+        return riskBreaches.contains(trade.getId())
+                || (trade.getDate() != null && lossDays.contains(ledgerDay(trade.getDate())));
+    }
+
+    private long ledgerDay(LocalDate date) {
+        return date != null ? Math.max(firstDay, Math.min(lastDay, date.toEpochDay())) : NO_DAY;
+    }
+
+    public long getFlagVersion() {
+        return flagVersion;
+    }
+
+    public int getTradingDays() {
+        return ledger.tradingDays;
+    }
+
+    public double getNetReturns() {
+        return ledger.sum(1);
+    }
+
+    // Largest fall from a peak of the day-close equity, counting the starting balance as the first peak
+    public double getMaxDailyCloseDrawdown() {
+        return Math.max(0, Math.max(ledger.drawdown(1), -ledger.minPrefix(1)));
+    }
+
+    public double getCurrentDailyCloseDrawdown() {
+        return Math.max(0, ledger.maxPrefix(1)) - ledger.sum(1);
+    }
+
+    public double getWorstDay() {
+        return Math.min(0, ledger.worstDay(1));
+    }
+
+    public boolean isBreached() {
+        return evaluate().stream().anyMatch(check -> check.getState() == State.BREACHED);
+    }
+
+    /** The configured rules in a fixed order; every figure comes from the running totals. */
+    public List<Check> evaluate() {
+        JournalSettings current = settings.get();
+        double balance = current.getAccountBalance();
+        List<Check> checks = new ArrayList<>();
+
+        if (current.getMaxDailyLoss() > 0) {
+            double limit = balance * current.getMaxDailyLoss() / 100;
+            String detail = String.format("Worst day $%.2f of -$%.2f", getWorstDay(), limit);
+            if (!lossDays.isEmpty()) {
+                detail += String.format(", %d day%s over, last %s", lossDays.size(), lossDays.size() == 1 ? "" : "s",
+                        LocalDate.ofEpochDay(lossDays.last()));
+            }
+            checks.add(new Check("Daily Loss", lossDays.isEmpty() ? State.OK : State.BREACHED, detail));
+        }
+        if (current.getMaxDrawdown() > 0) {
+            double limit = balance * current.getMaxDrawdown() / 100;
+            double drawdown = getMaxDailyCloseDrawdown();
+            checks.add(new Check("Day-Close Drawdown", drawdown > limit ? State.BREACHED : State.OK,
+                    String.format("Max $%.2f of $%.2f, now $%.2f", drawdown, limit, getCurrentDailyCloseDrawdown())));
+        }
+        if (current.getProfitTarget() > 0) {
+            double target = balance * current.getProfitTarget() / 100;
+            double net = getNetReturns();
+            checks.add(new Check("Profit Target", net >= target ? State.PASSED : State.PENDING,
+                    String.format("$%.2f of $%.2f (%.0f%%)", net, target, Math.max(0, net) * 100 / target)));
+        }
+        if (current.getMinTradingDays() > 0) {
+            int days = getTradingDays();
+            checks.add(new Check("Trading Days", days >= current.getMinTradingDays() ? State.PASSED : State.PENDING,
+                    days + " of " + current.getMinTradingDays()));
+        }
+        if (current.getMaxRiskMultiple() > 0) {
+            checks.add(new Check("Risk per Trade", riskBreaches.isEmpty() ? State.OK : State.BREACHED,
+                    riskBreaches.isEmpty()
+                            ? String.format("No loss over %.1fx avg risk", current.getMaxRiskMultiple())
+                            : String.format("%d trade%s lost over %.1fx avg risk", riskBreaches.size(),
+                                    riskBreaches.size() == 1 ? "" : "s", current.getMaxRiskMultiple())));
+        }
+        return checks;
+    }
+
+    @Override
+    public void rebuild(List<Trade> trades) {
+        super.rebuild(trades);
+        // A rebuild replaces every flag, and nothing else reports it
+        flagVersion++;
+        changed();
+    }
+
+    @Override
+    protected Entry add(Trade trade) {
+        JournalSettings current = settings.get();
+        long epochDay = ledgerDay(trade.getDate());
+        boolean riskBreach = current.getMaxRiskMultiple() > 0
+                && TopTrades.rMultiple(trade, current) < -current.getMaxRiskMultiple();
+        Entry entry = new Entry(trade.getId(), epochDay, trade.getReturns(), riskBreach);
+        if (riskBreach && riskBreaches.add(entry.id)) {
+            flagVersion++;
+        }
+        if (epochDay != NO_DAY) {
+            ledger.add(epochDay, entry.returns, 1);
+            updateLossDay(epochDay, current);
+        }
+        return entry;
+    }
+
+    @Override
+    protected void remove(Entry entry) {
+        if (entry.riskBreach && riskBreaches.remove(entry.id)) {
+            flagVersion++;
+        }
+        if (entry.epochDay != NO_DAY) {
+            ledger.add(entry.epochDay, -entry.returns, -1);
+            updateLossDay(entry.epochDay, settings.get());
+        }
+    }
+
+    private void updateLossDay(long epochDay, JournalSettings current) {
+        double limit = current.getAccountBalance() * current.getMaxDailyLoss() / 100;
+        boolean breached = current.getMaxDailyLoss() > 0 && ledger.count(epochDay) > 0 && ledger.day(epochDay) < -limit;
+        if (breached ? lossDays.add(epochDay) : lossDays.remove(epochDay)) {
+            flagVersion++;
+        }
+    }
+
+    @Override
+    protected void reset() {
+        ledger.clear();
+        lossDays.clear();
+        riskBreaches.clear();
+    }
+
+    @Override
+    protected void changed() {
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Segment tree over a window of calendar days that doubles as trades
+     * outside it arrive. Leaves are days; node 1 is the root.
+     */
+    private static final class DailyLedger {
+        private long base;
+        private int capacity;
+        private int[] counts = new int[0];
+        // Per node: sum, lowest and highest running total, largest fall and worst single day
+        private double[] sums = new double[0];
+        private double[] mins = new double[0];
+        private double[] maxs = new double[0];
+        private double[] drawdowns = new double[0];
+        private double[] worst = new double[0];
+        private int tradingDays;
+
+        void add(long epochDay, double amount, int trades) {
+            ensureCovers(epochDay);
+            int slot = (int) (epochDay - base);
+            int before = counts[slot];
+            counts[slot] += trades;
+            if (before == 0 && counts[slot] > 0) {
+                tradingDays++;
+            } else if (before > 0 && counts[slot] == 0) {
+                tradingDays--;
+            }
+            int node = capacity + slot;
+            // An empty day is exactly zero, whatever rounding the removals left behind
+            setLeaf(node, counts[slot] == 0 ? 0 : sums[node] + amount);
+            for (node >>= 1; node > 0; node >>= 1) {
+                combine(node);
+            }
+        }
+
+        int count(long epochDay) {
+            long slot = epochDay - base;
+            return slot >= 0 && slot < capacity ? counts[(int) slot] : 0;
+        }
+
+        double day(long epochDay) {
+            long slot = epochDay - base;
+            return slot >= 0 && slot < capacity ? sums[capacity + (int) slot] : 0;
+        }
+
+        double sum(int node) {
+            return capacity == 0 ? 0 : sums[node];
+        }
+
+        double minPrefix(int node) {
+            return capacity == 0 ? 0 : mins[node];
+        }
+
+        double maxPrefix(int node) {
+            return capacity == 0 ? 0 : maxs[node];
+        }
+
+        double drawdown(int node) {
+            return capacity == 0 ? 0 : drawdowns[node];
+        }
+
+        double worstDay(int node) {
+            return capacity == 0 ? 0 : worst[node];
+        }
+
+        void clear() {
+            base = 0;
+            capacity = 0;
+            counts = new int[0];
+            sums = mins = maxs = drawdowns = worst = new double[0];
+            tradingDays = 0;
+        }
+
+        private void setLeaf(int node, double value) {
+            sums[node] = value;
+            mins[node] = value;
+            maxs[node] = value;
+            drawdowns[node] = 0;
+            worst[node] = value;
+        }
+
+        // Left child is earlier in time, so its running totals carry into the right one
+        private void combine(int node) {
+            int left = node << 1;
+            int right = left | 1;
+            sums[node] = sums[left] + sums[right];
+            mins[node] = Math.min(mins[left], sums[left] + mins[right]);
+            maxs[node] = Math.max(maxs[left], sums[left] + maxs[right]);
+            drawdowns[node] = Math.max(Math.max(drawdowns[left], drawdowns[right]),
+                    maxs[left] - sums[left] - mins[right]);
+            worst[node] = Math.min(worst[left], worst[right]);
+        }
+
+        private void ensureCovers(long epochDay) {
+            if (capacity > 0 && epochDay >= base && epochDay < base + capacity) {
+                return;
+            }
+            long low = capacity == 0 ? epochDay : Math.min(epochDay, base);
+            long high = capacity == 0 ? epochDay + 1 : Math.max(epochDay + 1, base + capacity);
+            int newCapacity = Math.max(INITIAL_DAYS, capacity);
+            while (newCapacity < high - low) {
+                newCapacity <<= 1;
+            }
+            // Growing toward earlier days leaves the headroom before them, toward later days after them
+            long newBase = capacity > 0 && epochDay < base ? high - newCapacity : low;
+
+            int[] oldCounts = counts;
+            double[] oldSums = sums;
+            int oldCapacity = capacity;
+            long offset = base - newBase;
+            counts = new int[newCapacity];
+            sums = new double[2 * newCapacity];
+            mins = new double[2 * newCapacity];
+            maxs = new double[2 * newCapacity];
+            drawdowns = new double[2 * newCapacity];
+            worst = new double[2 * newCapacity];
+            capacity = newCapacity;
+            base = newBase;
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int target = (int) (slot + offset);
+                counts[target] = oldCounts[slot];
+                setLeaf(newCapacity + target, oldSums[oldCapacity + slot]);
+            }
+            for (int node = newCapacity - 1; node > 0; node--) {
+                combine(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.tradingjournal;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Screenshots scaled down to the width they are shown at, loaded off the FX
+ * thread.
+ *
+ * Thumbnails are kept in two LRU tiers: decoded images in memory, bounded by
+ * their pixel size, and PNG files in a thumbnail directory next to the
+ * account's images, bounded by their total file size. A screenshot is only
+ * decoded at full size the first time it is shown at a given width, and then
+ * with source subsampling so a large screenshot never sits in the heap at
+ * full resolution.
+ */
+public class ThumbnailCache {
+    public static final String THUMBNAIL_DIR = ".thumbnails";
+    private static final long MEMORY_BUDGET = 64L << 20;
+    private static final long DISK_BUDGET = 256L << 20;
+    // Subsample the source down to about twice the thumbnail width, then filter the rest
+    private static final int SUBSAMPLE_HEADROOM = 2;
+
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)), r -> {
+                Thread thread = new Thread(r, "thumbnail-loader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+
+    private final File directory;
+    // Access-ordered, so iteration starts at the least recently used thumbnail
+    private final LinkedHashMap<String, Image> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<Image>> pending = new HashMap<>();
+    private long memoryBytes;
+    private long diskBytes = -1;
+
+    public ThumbnailCache(File directory) {
+        this.directory = directory;
+    }
+
+    public synchronized Image getCached(String imagePath, int width) {
+        return memory.get(key(imagePath, width));
+    }
+
+    /** Loads the thumbnail in the background; concurrent requests for the same one share the work. */
+    public synchronized CompletableFuture<Image> load(String imagePath, int width) {
+        String key = key(imagePath, width);
+        Image cached = memory.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Image> future = pending.get(key);
+        if (future == null) {
+            future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return put(key, toFxImage(readThumbnail(new File(imagePath), width)));
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to load image " + imagePath + ": " + e.getMessage(), e);
+                } finally {
+                    synchronized (this) {
+                        pending.remove(key);
+                    }
+                }
+            }, LOADER);
+            pending.put(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * Shows the thumbnail in the view: at once when it is in memory, otherwise
+     * on the FX thread when it has loaded, unless the view was given another
+     * image in the meantime.
+     */
+    public void loadInto(ImageView view, String imagePath, int width) {
+        String key = key(imagePath, width);
+        view.setUserData(key);
+        Image cached = getCached(imagePath, width);
+        if (cached != null) {
+            view.setImage(cached);
+            return;
+        }
+        load(imagePath, width).whenComplete((image, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println("Error loading thumbnail: " + error.getMessage());
+                return;
+            }
+            if (key.equals(view.getUserData())) {
+                view.setImage(image);
+            }
+        }));
+    }
+
+    // Drops every size of one image, e.g. after the image file was replaced
+    public synchronized void evict(String imagePath) {
+        String prefix = imagePath + '\u0000';
+        for (Iterator<Map.Entry<String, Image>> it = memory.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Image> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                memoryBytes -= bytes(entry.getValue());
+                it.remove();
+            }
+        }
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(diskPrefix(imagePath)));
+        if (files != null) {
+            for (File file : files) {
+                long length = file.length();
+                if (file.delete() && diskBytes >= 0) {
+                    diskBytes -= length;
+                }
+            }
+        }
+    }
+
+    private synchronized Image put(String key, Image image) {
+        Image previous = memory.put(key, image);
+        if (previous != null) {
+            memoryBytes -= bytes(previous);
+        }
+        memoryBytes += bytes(image);
+        Iterator<Map.Entry<String, Image>> it = memory.entrySet().iterator();
+        while (memoryBytes > MEMORY_BUDGET && memory.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Image> eldest = it.next();
+            if (eldest.getValue() != image) {
+                memoryBytes -= bytes(eldest.getValue());
+                it.remove();
+            }
+        }
+        return image;
+    }
+
+    private BufferedImage readThumbnail(File source, int width) throws IOException {
+        File thumbnail = new File(directory, diskPrefix(source.getPath()) + width + ".png");
+        if (thumbnail.isFile() && thumbnail.lastModified() >= source.lastModified()) {
+            BufferedImage image = ImageIO.read(thumbnail);
+            if (image != null) {
+                // Touch it so disk eviction sees it as recently used
+                thumbnail.setLastModified(System.currentTimeMillis());
+                return image;
+            }
+        }
+
+        long start = System.nanoTime();
+        BufferedImage image = createThumbnail(source, width);
+        writeThumbnail(image, thumbnail);
+        System.out.println("Created " + image.getWidth() + "x" + image.getHeight() + " thumbnail of " + source.getName()
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return image;
+    }
+
+    static BufferedImage createThumbnail(File source, int width) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            if (input == null) {
+                throw new IOException("Cannot read " + source);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format: " + source.getName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = sourceWidth / (width * SUBSAMPLE_HEADROOM);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return scale(reader.read(0, param), width);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Never enlarges; the view's fit width does that, as it did with full images
+    private static BufferedImage scale(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private void writeThumbnail(BufferedImage image, File thumbnail) {
+        try {
+            Files.createDirectories(directory.toPath());
+            File temp = new File(directory, thumbnail.getName() + ".tmp");
+            if (!ImageIO.write(image, "png", temp)) {
+                return;
+            }
+            Files.move(temp.toPath(), thumbnail.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            trimDisk(thumbnail.length());
+        } catch (IOException e) {
+            // The thumbnail still shows, it just has to be made again next time
+            System.err.println("Error writing thumbnail " + thumbnail + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void trimDisk(long added) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null) {
+            return;
+        }
+        if (diskBytes < 0) {
+            diskBytes = Arrays.stream(files).mapToLong(File::length).sum();
+        } else {
+            diskBytes += added;
+        }
+        if (diskBytes <= DISK_BUDGET) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (diskBytes <= DISK_BUDGET * 3 / 4) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+
+    static Image toFxImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+        WritableImage fxImage = new WritableImage(width, height);
+        fxImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        return fxImage;
+    }
+
+    private static String key(String imagePath, int width) {
+        return imagePath + '\u0000' + width;
+    }
+
+    // File name stem of an image's thumbnails: its name plus a hash of its full path
+    private static String diskPrefix(String imagePath) {
+        File file = new File(imagePath);
+        CRC32 crc = new CRC32();
+        crc.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return file.getName().replaceAll("[^A-Za-z0-9._-]", "_") + "." + Long.toHexString(crc.getValue()) + ".";
+    }
+
+    private static long bytes(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+}
@@ -0,0 +1,143 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.JournalSettings;
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Trades ordered by a selectable ranking, kept in sync with the trade list so
+ * the best and worst K can be read without sorting the whole account.
+ *
+ * A balanced tree is used rather than a pair of bounded heaps because trades
+ * can be edited or deleted; a heap would have to be rebuilt every time one of
+ * its K members left. Each change costs O(log n) and reading K trades from
+ * either end costs O(K): the K ids are turned back into trades through the
+ * trade list's id lookup.
+ */
+public class TopTrades extends TradeAggregate<TopTrades.Entry> {
+
+    public enum Ranking {
+        RETURNS("Returns") {
+            @Override
+            public double value(Trade trade, JournalSettings settings) {
+                return trade.getReturns();
+            }
+        },
+        RETURN_PERCENTAGE("Return %") {
+            @Override
+            public double value(Trade trade, JournalSettings settings) {
+                return trade.getReturnPercentage();
+            }
+        },
+        R_MULTIPLE("R-Multiple") {
+            @Override
+            public double value(Trade trade, JournalSettings settings) {
+                return rMultiple(trade, settings);
+            }
+        };
+
+        private final String label;
+
+        Ranking(String label) {
+            this.label = label;
+        }
+
+        public abstract double value(Trade trade, JournalSettings settings);
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    static final class Entry {
+        final double key;
+        final long id;
+
+        Entry(double key, long id) {
+            // NaN would break the ordering, rank it as zero
+            this.key = Double.isNaN(key) ? 0 : key;
+            this.id = id;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble((Entry e) -> e.key)
+            .thenComparingLong(e -> e.id);
+
+    private final NavigableSet<Entry> order = new TreeSet<>(ORDER);
+    private final Supplier<JournalSettings> settings;
+    private Ranking ranking = Ranking.RETURNS;
+
+    public TopTrades(Supplier<JournalSettings> settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Returns divided by the amount risked on the trade: the trade's recorded
+     * balance (or the account balance if none was entered) times the
+     * average risk percentage from the settings.
+     */
+    public static double rMultiple(Trade trade, JournalSettings settings) {
+        return trade.getRMultiple(settings.getAccountBalance(), settings.getAverageRisk());
+    }
+
+    public Ranking getRanking() {
+        return ranking;
+    }
+
+    public void setRanking(Ranking ranking) {
+        if (this.ranking != ranking) {
+            this.ranking = ranking;
+            rebuild();
+        }
+    }
+
+    public List<Trade> best(int k) {
+        return take(order.descendingIterator(), k);
+    }
+
+    public List<Trade> worst(int k) {
+        return take(order.iterator(), k);
+    }
+
+    private List<Trade> take(Iterator<Entry> entries, int k) {
+        List<Long> ids = new ArrayList<>(Math.max(0, k));
+        while (ids.size() < k && entries.hasNext()) {
+            ids.add(entries.next().id);
+        }
+        Map<Long, Trade> found = find(ids);
+        List<Trade> result = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            Trade trade = found.get(id);
+            if (trade != null) {
+                result.add(trade);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected Entry add(Trade trade) {
+        Entry entry = new Entry(ranking.value(trade, settings.get()), trade.getId());
+        order.add(entry);
+        return entry;
+    }
+
+    @Override
+    protected void remove(Entry entry) {
+        order.remove(entry);
+    }
+
+    @Override
+    protected void reset() {
+        order.clear();
+    }
+}
@@ -0,0 +1,139 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Base for summaries that are kept up to date from trade list changes
+ * instead of being recomputed by scanning every trade.
+ *
+ * Trades are edited in place and then re-set in the list, so by the time a
+ * change arrives the removed trade already carries its new values. Each
+ * subclass therefore records what it took from a trade when it was added
+ * (keyed by trade id) and undoes exactly that on removal.
+ *
+ * Subclasses keep trade ids rather than the trades themselves and look up
+ * only the ones about to be shown, so a list that builds trades on demand
+ * (the column store) is free to drop the rest. Both stores' lists find a
+ * trade by id directly, so a lookup costs one probe per id.
+ */
+public abstract class TradeAggregate<S> implements ListChangeListener<Trade> {
+    private final Map<Long, S> recorded = new HashMap<>();
+    private ObservableList<Trade> source;
+
+    public void attach(ObservableList<Trade> trades) {
+        detach();
+        source = trades;
+        rebuild(trades);
+        trades.addListener(this);
+    }
+
+    public void detach() {
+        if (source != null) {
+            source.removeListener(this);
+            source = null;
+        }
+    }
+
+    // Recomputes from the attached list, e.g. after the ranking inputs changed
+    public void rebuild() {
+        if (source != null) {
+            rebuild(source);
+        }
+    }
+
+    public void rebuild(List<Trade> trades) {
+        recorded.clear();
+        reset();
+        for (Trade trade : trades) {
+            added(trade);
+        }
+    }
+
+    @Override
+    public void onChanged(Change<? extends Trade> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                continue;
+            }
+            if (change.wasRemoved()) {
+                for (Trade trade : change.getRemoved()) {
+                    S state = recorded.remove(trade.getId());
+                    if (state != null) {
+                        remove(state);
+                    }
+                }
+            }
+            if (change.wasAdded()) {
+                for (Trade trade : change.getAddedSubList()) {
+                    added(trade);
+                }
+            }
+        }
+        changed();
+    }
+
+    private void added(Trade trade) {
+        S previous = recorded.remove(trade.getId());
+        if (previous != null) {
+            remove(previous);
+        }
+        recorded.put(trade.getId(), add(trade));
+    }
+
+    // Trades of the attached list with the given ids; ids no longer in the list are left out.
+    // Only a list that cannot find trades by id is scanned.
+    protected Map<Long, Trade> find(Collection<Long> ids) {
+        Map<Long, Trade> found = new HashMap<>();
+        if (source == null || ids.isEmpty()) {
+            return found;
+        }
+        if (source instanceof TradeStore.IndexedList) {
+            TradeStore.IndexedList indexed = (TradeStore.IndexedList) source;
+            for (long id : ids) {
+                Trade trade = indexed.findById(id);
+                if (trade != null) {
+                    found.put(id, trade);
+                }
+            }
+            return found;
+        }
+        Set<Long> wanted = new HashSet<>(ids);
+        for (Trade trade : source) {
+            if (wanted.contains(trade.getId())) {
+                found.put(trade.getId(), trade);
+                if (found.size() == wanted.size()) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    public int size() {
+        return recorded.size();
+    }
+
+    // Live view of the recorded states; only safe to read on the thread that applies changes
+    protected Collection<S> states() {
+        return recorded.values();
+    }
+
+    // Folds the trade in and returns whatever is needed to take it out again
+    protected abstract S add(Trade trade);
+
+    protected abstract void remove(S state);
+
+    protected abstract void reset();
+
+    // Called once after each batch of changes has been applied
+    protected void changed() {
+    }
+}
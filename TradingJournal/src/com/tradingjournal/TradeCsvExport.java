@@ -0,0 +1,192 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import javafx.concurrent.Task;
+
+/**
+ * Background CSV export of trades.
+ *
+ * Rows are assembled in one reused StringBuilder and written through a
+ * large buffer, optionally gzip-compressed. Dates and numbers are appended
+ * directly instead of going through String.format, and numbers always use
+ * '.' as the decimal separator so the file reads back the same in any
+ * locale. The columns are the ones the importer looks for.
+ */
+public class TradeCsvExport extends Task<Integer> {
+    public static final String HEADER = "DATE,SYMBOL,SIDE,ENTRY,EXIT,SIZE,RETURNS,STATUS,SETUP,ENTRY_TYPE,DURATION,NOTES,BALANCE";
+    private static final int BUFFER_SIZE = 1 << 18;
+    private static final int PROGRESS_INTERVAL = 10_000;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000};
+    // Beyond this, value * 10^decimals no longer fits a long exactly
+    private static final double FAST_LIMIT = 1e12;
+
+    private final List<Trade> trades;
+    private final File file;
+    private final boolean gzip;
+
+    /**
+     * @param trades a snapshot taken on the FX thread; the list is not copied again
+     */
+    public TradeCsvExport(List<Trade> trades, File file, boolean gzip) {
+        this.trades = trades;
+        this.file = file;
+        this.gzip = gzip;
+    }
+
+    @Override
+    protected Integer call() throws Exception {
+        long start = System.currentTimeMillis();
+        int total = trades.size();
+        StringBuilder row = new StringBuilder(256);
+        int written = 0;
+
+        updateMessage("Exporting to " + file.getName() + "...");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        try (Writer writer = new OutputStreamWriter(gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out)) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Trade trade : trades) {
+                if (written % PROGRESS_INTERVAL == 0) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    updateProgress(written, total);
+                    updateMessage(String.format("Exported %,d of %,d trades", written, total));
+                }
+                row.setLength(0);
+                appendRow(row, trade);
+                writer.append(row);
+                written++;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file.toPath());
+            throw e;
+        }
+        if (isCancelled()) {
+            // A partial export is worse than none
+            Files.deleteIfExists(file.toPath());
+            return null;
+        }
+        updateProgress(total, total);
+        System.out.println("Exported " + written + " trades to " + file + (gzip ? " (gzip)" : "") + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return written;
+    }
+
+    static void appendRow(StringBuilder row, Trade trade) {
+        appendDate(row, trade.getDate());
+        row.append(',');
+        appendText(row, trade.getSymbol());
+        row.append(',');
+        appendText(row, trade.getSide());
+        row.append(',');
+        appendFixed(row, trade.getEntry(), 5);
+        row.append(',');
+        appendFixed(row, trade.getExit(), 5);
+        row.append(',');
+        appendFixed(row, trade.getSize(), 2);
+        row.append(',');
+        appendFixed(row, trade.getReturns(), 2);
+        row.append(',');
+        appendText(row, trade.getStatus());
+        row.append(',');
+        appendText(row, trade.getSetup());
+        row.append(',');
+        appendText(row, trade.getEntryType());
+        row.append(',');
+        appendText(row, trade.getDuration());
+        row.append(',');
+        // Notes are always quoted, as before
+        if (trade.getNotes() != null) {
+            appendQuoted(row, trade.getNotes());
+        }
+        row.append(',');
+        appendFixed(row, trade.getBalance(), 2);
+        row.append('\n');
+    }
+
+    // yyyy-MM-dd without a formatter
+    static void appendDate(StringBuilder row, LocalDate date) {
+        if (date == null) {
+            return;
+        }
+        int year = date.getYear();
+        if (year < 1000 || year > 9999) {
+            row.append(date);
+            return;
+        }
+        row.append(year).append('-');
+        appendTwoDigits(row, date.getMonthValue());
+        row.append('-');
+        appendTwoDigits(row, date.getDayOfMonth());
+    }
+
+    private static void appendTwoDigits(StringBuilder row, int value) {
+        row.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    // Fixed-point with half-up rounding, like %.Nf but locale independent
+    static void appendFixed(StringBuilder row, double value, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        double shifted = Math.abs(value) * scale;
+        // Values close to a rounding tie are rounded on their decimal digits, as String.format does
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= FAST_LIMIT
+                || Math.abs(shifted - Math.floor(shifted) - 0.5) < Math.max(1e-6, 8 * Math.ulp(shifted))) {
+            String text = BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+            row.append(text.startsWith("-") && text.matches("-0\\.0*") ? text.substring(1) : text);
+            return;
+        }
+        long scaled = Math.round(shifted);
+        if (value < 0 && scaled != 0) {
+            row.append('-');
+        }
+        row.append(scaled / scale);
+        if (decimals > 0) {
+            row.append('.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                row.append((char) ('0' + fraction / digit % 10));
+            }
+        }
+    }
+
+    private static void appendText(StringBuilder row, String value) {
+        if (value == null) {
+            return;
+        }
+        // Quote only what would otherwise break the record
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                appendQuoted(row, value);
+                return;
+            }
+        }
+        row.append(value);
+    }
+
+    private static void appendQuoted(StringBuilder row, String value) {
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+}
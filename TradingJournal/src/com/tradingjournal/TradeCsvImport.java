@@ -0,0 +1,450 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+/**
+ * Background CSV import of trades.
+ *
+ * The file is streamed through CsvReader and parsed trades are handed to the
+ * FX thread in batches, so the window stays responsive while a large file
+ * is read. The journal's import keeps every batch until the end, because
+ * nothing is added before the duplicate check has seen the whole file.
+ * Progress is reported against the file length and the task can be
+ * cancelled between rows.
+ *
+ * In parallel mode the file is instead cut into byte ranges that end on
+ * record boundaries, the ranges are parsed concurrently on a ForkJoinPool
+ * and the results are joined back in file order and handed over as a
+ * single batch. A quoted field may span lines, so the boundaries come from
+ * one quick pass over the raw bytes that tracks whether a newline is inside
+ * quotes.
+ *
+ * Columns are located by the header names written by the export
+ * (DATE, SYMBOL, SIDE, ...). Files whose header does not name the columns
+ * are read with the fixed layout the importer has always used.
+ */
+public class TradeCsvImport extends Task<TradeCsvImport.Summary> {
+    public static final int BATCH_SIZE = 10_000;
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    public static final class Summary {
+        private final int imported;
+        private final int skipped;
+        private final long elapsedMillis;
+        private final int threads;
+
+        Summary(int imported, int skipped, long elapsedMillis, int threads) {
+            this.imported = imported;
+            this.skipped = skipped;
+            this.elapsedMillis = elapsedMillis;
+            this.threads = threads;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        // Data rows read, valid or not, per second of wall time
+        public double getRowsPerSecond() {
+            return (imported + skipped) * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        public String describe() {
+            return String.format("%,d rows in %,d ms on %d thread%s (%,.0f rows/sec)", imported + skipped,
+                    elapsedMillis, threads, threads == 1 ? "" : "s", getRowsPerSecond());
+        }
+    }
+
+    /** Where each trade field sits in a record; -1 when the file does not have it. */
+    static final class Columns {
+        private static final String[] NAMES = {
+            "DATE", "SYMBOL", "SIDE", "ENTRY", "EXIT", "SIZE", "RETURNS",
+            "STATUS", "SETUP", "ENTRY_TYPE", "DURATION", "NOTES", "BALANCE"
+        };
+        // Positions used before imports read the header
+        private static final int[] LEGACY = {0, 1, 2, 3, 4, 5, 6, 8, 9, 10, 11, 12, 13};
+        private static final int DATE = 0, SYMBOL = 1, SIDE = 2, ENTRY = 3, EXIT = 4, SIZE = 5, RETURNS = 6,
+                STATUS = 7, SETUP = 8, ENTRY_TYPE = 9, DURATION = 10, NOTES = 11, BALANCE = 12;
+
+        private final int[] index;
+        private final int required;
+
+        private Columns(int[] index, int required) {
+            this.index = index;
+            this.required = required;
+        }
+
+        static Columns fromHeader(CsvReader header) {
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < header.getFieldCount(); i++) {
+                positions.put(header.getField(i).trim().toUpperCase(Locale.ROOT), i);
+            }
+            if (!positions.containsKey("DATE") || !positions.containsKey("SYMBOL")) {
+                // The old importer required everything up to the duration column
+                return new Columns(LEGACY, 12);
+            }
+            int[] index = new int[NAMES.length];
+            int required = 0;
+            for (int i = 0; i < NAMES.length; i++) {
+                index[i] = positions.getOrDefault(NAMES[i], -1);
+                if (i <= DURATION) {
+                    required = Math.max(required, index[i] + 1);
+                }
+            }
+            for (int column : new int[] {ENTRY, EXIT, SIZE, RETURNS}) {
+                if (index[column] < 0) {
+                    // Without prices no row can become a trade
+                    required = Integer.MAX_VALUE;
+                }
+            }
+            return new Columns(index, required);
+        }
+
+        // Null when the record is too short; throws when a value does not parse
+        Trade parse(CsvReader record) {
+            if (record.getFieldCount() < required) {
+                return null;
+            }
+            LocalDate date = LocalDate.parse(field(record, DATE));
+            double entry = Double.parseDouble(field(record, ENTRY));
+            double exit = Double.parseDouble(field(record, EXIT));
+            double size = Double.parseDouble(field(record, SIZE));
+            double returns = Double.parseDouble(field(record, RETURNS));
+
+            double balance = 0.0;
+            String balanceText = field(record, BALANCE);
+            if (balanceText != null && !balanceText.isEmpty()) {
+                try {
+                    balance = Double.parseDouble(balanceText);
+                } catch (NumberFormatException e) {
+                    // If balance parsing fails, use default 0.0
+                }
+            }
+
+            Trade trade = new Trade(field(record, STATUS), date, field(record, DURATION), field(record, SYMBOL),
+                    entry, exit, size, field(record, SIDE), field(record, SETUP), field(record, ENTRY_TYPE),
+                    returns, balance);
+            String notes = field(record, NOTES);
+            if (notes != null) {
+                trade.setNotes(notes);
+            }
+            return trade;
+        }
+
+        private String field(CsvReader record, int column) {
+            int i = index[column];
+            return i >= 0 ? record.getField(i) : null;
+        }
+    }
+
+    private final File file;
+    private final boolean parallel;
+    private final Consumer<List<Trade>> batchConsumer;
+    private volatile int imported;
+
+    public TradeCsvImport(File file, Consumer<List<Trade>> batchConsumer) {
+        this(file, false, batchConsumer);
+    }
+
+    /**
+     * @param parallel parse byte ranges of the file concurrently and hand over one batch at the end
+     * @param batchConsumer receives each batch of parsed trades on the FX thread
+     */
+    public TradeCsvImport(File file, boolean parallel, Consumer<List<Trade>> batchConsumer) {
+        this.file = file;
+        this.parallel = parallel;
+        this.batchConsumer = batchConsumer;
+    }
+
+    // Trades handed over so far; still meaningful after a cancel
+    public int getImported() {
+        return imported;
+    }
+
+    @Override
+    protected Summary call() throws Exception {
+        return parallel ? importParallel() : importSequential();
+    }
+
+    private Summary importSequential() throws IOException {
+        long start = System.currentTimeMillis();
+        long length = Math.max(1, file.length());
+        int skipped = 0;
+        List<Trade> batch = new ArrayList<>(BATCH_SIZE);
+
+        updateMessage("Reading " + file.getName() + "...");
+        try (CsvReader reader = new CsvReader(new InputStreamReader(new FileInputStream(file)))) {
+            if (!reader.next()) {
+                return new Summary(0, 0, System.currentTimeMillis() - start, 1);
+            }
+            Columns columns = Columns.fromHeader(reader);
+
+            while (reader.next()) {
+                if (reader.getRecordNumber() % CANCEL_CHECK_INTERVAL == 0 && isCancelled()) {
+                    return null;
+                }
+                try {
+                    Trade trade = columns.parse(reader);
+                    if (trade != null) {
+                        batch.add(trade);
+                    } else if (reader.getFieldCount() > 1) {
+                        skipped++;
+                    }
+                } catch (DateTimeParseException | NumberFormatException e) {
+                    // Skip invalid lines
+                    if (++skipped <= MAX_REPORTED_ERRORS) {
+                        System.err.println("Skipping invalid record " + reader.getRecordNumber() + ": " + e.getMessage());
+                    }
+                }
+
+                if (batch.size() == BATCH_SIZE) {
+                    publish(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    updateProgress(reader.getCharsRead(), length);
+                    updateMessage(String.format("Imported %,d trades", imported));
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            publish(batch);
+        }
+        updateProgress(length, length);
+
+        Summary summary = new Summary(imported, skipped, System.currentTimeMillis() - start, 1);
+        System.out.println("Imported " + imported + " trades from " + file + ": " + summary.describe());
+        return summary;
+    }
+
+    private static final class Chunk {
+        final List<Trade> trades = new ArrayList<>();
+        int skipped;
+    }
+
+    private Summary importParallel() throws Exception {
+        long start = System.currentTimeMillis();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            updateMessage("Finding record boundaries in " + file.getName() + "...");
+            long[] bounds = recordBoundaries(channel, Math.max(MIN_CHUNK_SIZE, length / (threads * CHUNKS_PER_THREAD)));
+            if (bounds.length < 2) {
+                return new Summary(0, 0, System.currentTimeMillis() - start, threads);
+            }
+            CsvReader header = reader(channel, 0, bounds[0]);
+            header.next();
+            Columns columns = Columns.fromHeader(header);
+
+            AtomicLong parsedBytes = new AtomicLong(bounds[0]);
+            AtomicInteger parsedRows = new AtomicInteger();
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            List<Chunk> chunks;
+            try {
+                chunks = pool.invoke(new ParseChunks(channel, columns, bounds, 0, bounds.length - 1,
+                        parsedBytes, parsedRows, length));
+            } finally {
+                pool.shutdown();
+            }
+            if (isCancelled()) {
+                return null;
+            }
+
+            // Chunks come back in file order; one bulk add keeps list listeners to a single change
+            int skipped = 0;
+            int total = 0;
+            for (Chunk chunk : chunks) {
+                total += chunk.trades.size();
+                skipped += chunk.skipped;
+            }
+            List<Trade> all = new ArrayList<>(total);
+            for (Chunk chunk : chunks) {
+                all.addAll(chunk.trades);
+            }
+            if (!all.isEmpty()) {
+                publish(all);
+            }
+            updateProgress(length, length);
+
+            Summary summary = new Summary(imported, skipped, System.currentTimeMillis() - start, threads);
+            System.out.println("Imported " + imported + " trades from " + file + " in " + (bounds.length - 1)
+                    + " chunks: " + summary.describe());
+            return summary;
+        }
+    }
+
+    /**
+     * Offsets just past the header and past the first record end at or after
+     * every chunkSize bytes, ending with the file length. A record ends at
+     * \n, \r\n or a lone \r, as in CsvReader. Line breaks inside quotes are
+     * not record ends; doubled quotes toggle the state twice and so leave it
+     * unchanged.
+     */
+    static long[] recordBoundaries(FileChannel channel, long chunkSize) throws IOException {
+        long length = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        boolean quoted = false;
+        long offset = 0;
+        long nextBound = -1;
+        // A \r only ends the record by itself when no \n follows it
+        boolean afterCr = false;
+
+        channel.position(0);
+        while (channel.read(buffer) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                offset++;
+                long end = -1;
+                if (afterCr) {
+                    afterCr = false;
+                    if (b != '\n') {
+                        end = offset - 1;
+                    }
+                }
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    end = offset;
+                } else if (b == '\r' && !quoted) {
+                    afterCr = true;
+                }
+                if (end >= 0 && end >= nextBound) {
+                    bounds.add(end);
+                    nextBound = end + chunkSize;
+                }
+            }
+            buffer.clear();
+        }
+        if (bounds.isEmpty() || bounds.get(bounds.size() - 1) != length) {
+            bounds.add(length);
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static CsvReader reader(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+        while (bytes.hasRemaining()) {
+            // Positional reads do not move the shared channel position, so workers can share it
+            if (channel.read(bytes, from + bytes.position()) < 0) {
+                break;
+            }
+        }
+        return new CsvReader(new InputStreamReader(new ByteArrayInputStream(bytes.array(), 0, bytes.position())));
+    }
+
+    private final class ParseChunks extends RecursiveTask<List<Chunk>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final Columns columns;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final AtomicLong parsedBytes;
+        private final AtomicInteger parsedRows;
+        private final long length;
+
+        // Parses the ranges bounds[from..to]
+        ParseChunks(FileChannel channel, Columns columns, long[] bounds, int from, int to,
+                AtomicLong parsedBytes, AtomicInteger parsedRows, long length) {
+            this.channel = channel;
+            this.columns = columns;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.parsedBytes = parsedBytes;
+            this.parsedRows = parsedRows;
+            this.length = length;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ParseChunks left = new ParseChunks(channel, columns, bounds, from, middle, parsedBytes, parsedRows, length);
+                ParseChunks right = new ParseChunks(channel, columns, bounds, middle, to, parsedBytes, parsedRows, length);
+                left.fork();
+                List<Chunk> result = new ArrayList<>(right.compute());
+                result.addAll(0, left.join());
+                return result;
+            }
+            List<Chunk> result = new ArrayList<>(1);
+            result.add(parse(bounds[from], bounds[to]));
+            return result;
+        }
+
+        private Chunk parse(long start, long end) {
+            Chunk chunk = new Chunk();
+            try (CsvReader reader = reader(channel, start, end)) {
+                while (reader.next()) {
+                    if (reader.getRecordNumber() % CANCEL_CHECK_INTERVAL == 0 && isCancelled()) {
+                        return chunk;
+                    }
+                    try {
+                        Trade trade = columns.parse(reader);
+                        if (trade != null) {
+                            chunk.trades.add(trade);
+                        } else if (reader.getFieldCount() > 1) {
+                            chunk.skipped++;
+                        }
+                    } catch (DateTimeParseException | NumberFormatException e) {
+                        chunk.skipped++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read " + file + " at byte " + start, e);
+            }
+            int rows = parsedRows.addAndGet(chunk.trades.size() + chunk.skipped);
+            updateProgress(parsedBytes.addAndGet(end - start), length);
+            updateMessage(String.format("Parsed %,d rows", rows));
+            return chunk;
+        }
+    }
+
+    private void publish(List<Trade> batch) {
+        imported += batch.size();
+        Platform.runLater(() -> batchConsumer.accept(batch));
+    }
+}
@@ -0,0 +1,62 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.JournalSettings;
+import com.tradingjournal.TradingJournalApp.SetupEntryDetails;
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One shared instance per distinct symbol, setup and entry type string of an
+ * account.
+ *
+ * The dictionary starts from the account's configured symbols, setups and
+ * entry types and grows with whatever else trades carry (imported CSVs, old
+ * log records). Trades are pointed at the shared strings when they enter the
+ * journal, so a hundred thousand EURUSD trades hold one "EURUSD" between
+ * them.
+ *
+ * Comparisons still use equals(), which returns at its identity check for
+ * two shared strings. They do not use ==, because rows the column store
+ * reads back carry that store's own copies of the strings.
+ */
+public class TradeDictionary {
+    private final Map<String, String> values = new HashMap<>();
+
+    public TradeDictionary(JournalSettings settings) {
+        if (settings == null) {
+            return;
+        }
+        if (settings.getSymbols() != null) {
+            for (String symbol : settings.getSymbols()) {
+                intern(symbol);
+            }
+        }
+        for (List<SetupEntryDetails> details : List.of(settings.getSetupDetails(), settings.getEntryTypeDetails())) {
+            if (details != null) {
+                for (SetupEntryDetails item : details) {
+                    intern(item.getName());
+                }
+            }
+        }
+    }
+
+    public synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = values.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    public void intern(Trade trade) {
+        trade.setSymbol(intern(trade.getSymbol()));
+        trade.setSetup(intern(trade.getSetup()));
+        trade.setEntryType(intern(trade.getEntryType()));
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+}
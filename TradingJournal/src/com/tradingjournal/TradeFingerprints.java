@@ -0,0 +1,215 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Index of the journal's trades by fingerprint: date, symbol, side, entry,
+ * exit and size. Import uses it to recognise rows it already has with one
+ * hash lookup per row instead of comparing every row with every trade.
+ * Only trade ids are indexed; the few journal trades an import matches are
+ * looked up when it is classified.
+ *
+ * Prices are compared at the precision the CSV export writes them (5
+ * decimals, 2 for size), so re-importing an exported file matches the
+ * trades it came from.
+ */
+public class TradeFingerprints extends TradeAggregate<TradeFingerprints.Entry> {
+    private static final double PRICE_SCALE = 1e5;
+    private static final double SIZE_SCALE = 1e2;
+    private static final double AMOUNT_TOLERANCE = 0.005;
+
+    public static final class Fingerprint {
+        private final long epochDay;
+        private final String symbol;
+        private final Trade.Side side;
+        private final long entry;
+        private final long exit;
+        private final long size;
+        private final int hash;
+
+        Fingerprint(Trade trade) {
+            this.epochDay = trade.getDate() != null ? trade.getDate().toEpochDay() : Long.MIN_VALUE;
+            this.symbol = trade.getSymbol() != null ? trade.getSymbol().trim().toUpperCase(Locale.ROOT) : "";
+            this.side = trade.getSideValue();
+            this.entry = Math.round(trade.getEntry() * PRICE_SCALE);
+            this.exit = Math.round(trade.getExit() * PRICE_SCALE);
+            this.size = Math.round(trade.getSize() * SIZE_SCALE);
+            this.hash = Objects.hash(epochDay, symbol, side, entry, exit, size);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return hash == other.hash && epochDay == other.epochDay && entry == other.entry && exit == other.exit
+                    && size == other.size && side == other.side && symbol.equals(other.symbol);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    static final class Entry {
+        final Fingerprint fingerprint;
+        final long id;
+
+        Entry(Fingerprint fingerprint, long id) {
+            this.fingerprint = fingerprint;
+            this.id = id;
+        }
+    }
+
+    /** Incoming trades sorted against the journal. */
+    public static final class Classification {
+        private final List<Trade> fresh = new ArrayList<>();
+        private final List<Trade> duplicates = new ArrayList<>();
+        // Pairs of incoming trade and the journal trade it matches
+        private final List<Trade[]> conflicts = new ArrayList<>();
+
+        public List<Trade> getNew() {
+            return fresh;
+        }
+
+        public List<Trade> getDuplicates() {
+            return duplicates;
+        }
+
+        public List<Trade[]> getConflicts() {
+            return conflicts;
+        }
+    }
+
+    private final Map<Fingerprint, List<Long>> index = new HashMap<>();
+
+    /**
+     * Each journal trade accounts for one imported row with its fingerprint.
+     * Rows that match such a trade on every recorded field are duplicates,
+     * rows that match only its fingerprint (different returns, setup,
+     * notes...) are conflicts, and rows beyond the number of journal trades
+     * with that fingerprint are new, so a file that really holds two
+     * identical trades imports both.
+     */
+    public Classification classify(List<Trade> incoming) {
+        Fingerprint[] fingerprints = new Fingerprint[incoming.size()];
+        Set<Long> matchedIds = new HashSet<>();
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = new Fingerprint(incoming.get(i));
+            List<Long> ids = index.get(fingerprints[i]);
+            if (ids != null) {
+                matchedIds.addAll(ids);
+            }
+        }
+        Map<Long, Trade> journal = find(matchedIds);
+
+        // Journal trades not yet claimed by an imported row, per fingerprint
+        Map<Fingerprint, List<Trade>> unclaimed = new HashMap<>();
+        for (Fingerprint fingerprint : fingerprints) {
+            List<Long> ids = index.get(fingerprint);
+            if (ids != null && !unclaimed.containsKey(fingerprint)) {
+                List<Trade> trades = new ArrayList<>(ids.size());
+                for (long id : ids) {
+                    Trade trade = journal.get(id);
+                    if (trade != null) {
+                        trades.add(trade);
+                    }
+                }
+                unclaimed.put(fingerprint, trades);
+            }
+        }
+
+        // Identical rows claim their trades first, so a conflict never takes the trade a duplicate matches
+        boolean[] duplicate = new boolean[fingerprints.length];
+        for (int i = 0; i < fingerprints.length; i++) {
+            List<Trade> candidates = unclaimed.get(fingerprints[i]);
+            if (candidates == null) {
+                continue;
+            }
+            Trade row = incoming.get(i);
+            for (int j = 0; j < candidates.size(); j++) {
+                if (sameDetails(candidates.get(j), row)) {
+                    candidates.remove(j);
+                    duplicate[i] = true;
+                    break;
+                }
+            }
+        }
+
+        Classification result = new Classification();
+        for (int i = 0; i < fingerprints.length; i++) {
+            Trade row = incoming.get(i);
+            List<Trade> candidates = unclaimed.get(fingerprints[i]);
+            if (duplicate[i]) {
+                result.duplicates.add(row);
+            } else if (candidates != null && !candidates.isEmpty()) {
+                result.conflicts.add(new Trade[] {row, candidates.remove(0)});
+            } else {
+                result.fresh.add(row);
+            }
+        }
+        return result;
+    }
+
+    // Copies the imported details into the journal trade; empty imported notes keep the old ones
+    public static void merge(Trade from, Trade into) {
+        into.setReturns(from.getReturns());
+        into.setBalance(from.getBalance());
+        into.setSetup(from.getSetup());
+        into.setEntryType(from.getEntryType());
+        into.setDuration(from.getDuration());
+        if (from.getNotes() != null && !from.getNotes().isEmpty()) {
+            into.setNotes(from.getNotes());
+        }
+    }
+
+    static boolean sameDetails(Trade a, Trade b) {
+        return Math.abs(a.getReturns() - b.getReturns()) < AMOUNT_TOLERANCE
+                && Math.abs(a.getBalance() - b.getBalance()) < AMOUNT_TOLERANCE
+                && Objects.equals(a.getSetup(), b.getSetup())
+                && Objects.equals(a.getEntryType(), b.getEntryType())
+                && Objects.equals(a.getDuration(), b.getDuration())
+                && Objects.equals(emptyToNull(a.getNotes()), emptyToNull(b.getNotes()));
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    @Override
+    protected Entry add(Trade trade) {
+        Entry entry = new Entry(new Fingerprint(trade), trade.getId());
+        index.computeIfAbsent(entry.fingerprint, f -> new ArrayList<>(1)).add(entry.id);
+        return entry;
+    }
+
+    @Override
+    protected void remove(Entry entry) {
+        List<Long> ids = index.get(entry.fingerprint);
+        if (ids == null) {
+            return;
+        }
+        ids.remove(Long.valueOf(entry.id));
+        if (ids.isEmpty()) {
+            index.remove(entry.fingerprint);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        index.clear();
+    }
+}
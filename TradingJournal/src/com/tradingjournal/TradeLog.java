@@ -0,0 +1,403 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.collections.ObservableList;
+
+/**
+ * Append-only mutation log for an account's trades.
+ *
+ * trades.dat holds a full snapshot, trades.log holds the add/update/delete
+ * records written since that snapshot. Once the log grows past
+ * COMPACT_THRESHOLD records it is rotated to trades.log.1 and a background
+ * thread folds it into a fresh snapshot. The folded log is kept as
+ * trades.log.prev so that, if the new snapshot turns out to be damaged, the
+ * previous snapshot generation plus both logs still rebuild the history.
+ *
+ * The trade list belongs to the JavaFX thread. Changes are encoded there,
+ * when DataManager reports them, and only the encoded records reach the
+ * background writer. Compaction reads the previous snapshot and the rotated
+ * log back from disk instead of looking at the live trades.
+ */
+public class TradeLog implements TradeStore {
+    public static final byte OP_ADD = 1;
+    public static final byte OP_UPDATE = 2;
+    public static final byte OP_DELETE = 3;
+
+    private static final int MAGIC = 0x544A4C47; // "TJLG"
+    private static final byte VERSION = 2;
+    private static final byte JAVA_SERIALIZED_VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    private static final String SNAPSHOT_FILE = "trades.dat";
+    private static final String LOG_FILE = "trades.log";
+    private static final String ROTATED_LOG_FILE = "trades.log.1";
+    private static final String PREVIOUS_LOG_FILE = "trades.log.prev";
+    private static final String LEGACY_BACKUP_SUFFIX = ".legacy";
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final File rotatedLogFile;
+    private final File previousLogFile;
+
+    private DataOutputStream out;
+    private int recordCount;
+    private long nextId = 1;
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private Thread compactionThread;
+    private boolean legacyFormat;
+    private boolean recovered;
+    private long validLogLength;
+
+    // What was read back from the snapshot and the logs after it
+    private static final class History {
+        final Map<Long, Trade> byId = new LinkedHashMap<>();
+        long maxId;
+        int records;
+        boolean legacyFormat;
+        boolean recovered;
+    }
+
+    public TradeLog(File accountDir) {
+        this.snapshotFile = new File(accountDir, SNAPSHOT_FILE);
+        this.logFile = new File(accountDir, LOG_FILE);
+        this.rotatedLogFile = new File(accountDir, ROTATED_LOG_FILE);
+        this.previousLogFile = new File(accountDir, PREVIOUS_LOG_FILE);
+    }
+
+    @Override
+    public boolean exists() {
+        return AtomicFiles.exists(snapshotFile) || logFile.exists() || rotatedLogFile.exists();
+    }
+
+    @Override
+    public ObservableList<Trade> open() throws IOException, ClassNotFoundException {
+        return new IndexedTradeList(load());
+    }
+
+    // Reads the history and repairs the files if they were in an old format, half-compacted or torn
+    public List<Trade> load() throws IOException, ClassNotFoundException {
+        List<Trade> trades = read();
+        if (legacyFormat) {
+            System.out.println("Migrating " + trades.size() + " trades from Java serialization to binary format");
+            if (snapshotFile.exists() && JournalCodec.isJavaSerialized(snapshotFile)) {
+                // Pre-codec snapshot: keep a copy of the original before it gets rewritten
+                Files.copy(snapshotFile.toPath(), new File(snapshotFile.getPath() + LEGACY_BACKUP_SUFFIX).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            rewrite(JournalCodec.encodeTrades(trades));
+        } else if (recovered) {
+            System.out.println("Recovering trade history from an interrupted compaction or an older snapshot");
+            rewrite(JournalCodec.encodeTrades(trades));
+        } else if (logFile.exists() && validLogLength < logFile.length()) {
+            // New records go after the last intact one, not after a torn record replay would stop at
+            System.err.println("Discarding " + (logFile.length() - validLogLength) + " trailing bytes of " + logFile);
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(validLogLength);
+            }
+        }
+        return trades;
+    }
+
+    // Reads the snapshot and replays any log records on top of it; writes nothing, so it is safe for read-only views
+    public List<Trade> read() throws IOException, ClassNotFoundException {
+        History history = readHistory(true);
+        synchronized (this) {
+            nextId = Math.max(nextId, history.maxId + 1);
+            legacyFormat = history.legacyFormat;
+            recovered = history.recovered;
+        }
+        return new ArrayList<>(history.byId.values());
+    }
+
+    // The snapshot plus the logs written after it; the live log only when asked, compaction leaves it out
+    private History readHistory(boolean withLiveLog) throws IOException, ClassNotFoundException {
+        History history = new History();
+        history.legacyFormat = snapshotFile.exists() && JournalCodec.isJavaSerialized(snapshotFile);
+
+        AtomicFiles.Generation<List<Trade>> snapshot = AtomicFiles.read(snapshotFile, TradeLog::parseSnapshot);
+        if (snapshot != null) {
+            for (Trade trade : snapshot.getValue()) {
+                if (trade.getId() <= 0) {
+                    trade.setId(history.maxId + 1);
+                }
+                history.maxId = Math.max(history.maxId, trade.getId());
+                history.byId.put(trade.getId(), trade);
+            }
+            if (snapshot.isFallback() && previousLogFile.exists()) {
+                // The older snapshot predates the records folded into the damaged one
+                replay(previousLogFile, history);
+                history.recovered = true;
+            }
+        }
+
+        if (rotatedLogFile.exists()) {
+            // A previous compaction did not finish; its records are still authoritative
+            replay(rotatedLogFile, history);
+            history.recovered = true;
+        }
+        if (withLiveLog && logFile.exists()) {
+            int before = history.records;
+            long validLength = replay(logFile, history);
+            synchronized (this) {
+                recordCount = history.records - before;
+                validLogLength = validLength;
+            }
+        }
+        return history;
+    }
+
+    @Override
+    public synchronized void assignId(Trade trade) {
+        if (trade.getId() <= 0) {
+            trade.setId(nextId++);
+        } else {
+            nextId = Math.max(nextId, trade.getId() + 1);
+        }
+    }
+
+    @Override
+    public PersistenceQueue.Write tradesAdded(List<Trade> added) throws IOException {
+        List<byte[]> records = new ArrayList<>(added.size());
+        for (Trade trade : added) {
+            records.add(encodeRecord(OP_ADD, trade));
+        }
+        return () -> append(records);
+    }
+
+    @Override
+    public PersistenceQueue.Write tradeUpdated(Trade trade) throws IOException {
+        List<byte[]> records = List.of(encodeRecord(OP_UPDATE, trade));
+        return () -> append(records);
+    }
+
+    @Override
+    public PersistenceQueue.Write tradeDeleted(Trade trade) throws IOException {
+        List<byte[]> records = List.of(encodeRecord(OP_DELETE, trade));
+        return () -> append(records);
+    }
+
+    @Override
+    public PersistenceQueue.Write tradesReplaced(List<Trade> replacement) throws IOException {
+        byte[] snapshot = JournalCodec.encodeTrades(replacement);
+        return () -> rewrite(snapshot);
+    }
+
+    // Appends records made by encodeRecord and starts a compaction once the log is long enough
+    public synchronized void append(List<byte[]> records) throws IOException {
+        openLog();
+        for (byte[] record : records) {
+            out.write(record);
+        }
+        out.flush();
+        recordCount += records.size();
+        if (needsCompaction()) {
+            compactAsync();
+        }
+    }
+
+    public synchronized boolean needsCompaction() {
+        return recordCount >= COMPACT_THRESHOLD && !compacting.get() && !rotatedLogFile.exists();
+    }
+
+    /**
+     * Rotates the live log and folds it into a new snapshot in the background.
+     * The fold reads the current snapshot and the rotated log back from disk,
+     * so it never sees the trade list; records appended meanwhile go to a new
+     * live log.
+     */
+    public synchronized void compactAsync() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            closeLog();
+            Files.move(logFile.toPath(), rotatedLogFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            recordCount = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error rotating trade log: " + e.getMessage());
+            compacting.set(false);
+            return;
+        }
+
+        compactionThread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                List<Trade> folded = new ArrayList<>(readHistory(false).byId.values());
+                writeSnapshot(folded);
+                Files.move(rotatedLogFile.toPath(), previousLogFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Compacted trade log into snapshot of " + folded.size()
+                        + " trades in " + (System.currentTimeMillis() - start) + " ms");
+            } catch (IOException | ClassNotFoundException e) {
+                // The rotated log is kept and replayed on the next load
+                e.printStackTrace();
+                System.err.println("Error compacting trade log: " + e.getMessage());
+            } finally {
+                compacting.set(false);
+            }
+        }, "trade-log-compaction");
+        compactionThread.setDaemon(true);
+        compactionThread.start();
+    }
+
+    // Replaces the whole history with an encoded snapshot, e.g. after an import that replaces all trades
+    public synchronized void rewrite(byte[] snapshot) throws IOException {
+        awaitCompaction();
+        closeLog();
+        AtomicFiles.write(snapshotFile, snapshot);
+        Files.deleteIfExists(rotatedLogFile.toPath());
+        Files.deleteIfExists(logFile.toPath());
+        Files.deleteIfExists(previousLogFile.toPath());
+        recordCount = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        awaitCompaction();
+        try {
+            closeLog();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error closing trade log: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void delete() throws IOException {
+        close();
+        AtomicFiles.delete(snapshotFile);
+        Files.deleteIfExists(logFile.toPath());
+        Files.deleteIfExists(rotatedLogFile.toPath());
+        Files.deleteIfExists(previousLogFile.toPath());
+    }
+
+    private void awaitCompaction() {
+        Thread thread = compactionThread;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // One complete log record: length, op, id and the encoded trade
+    private static byte[] encodeRecord(byte op, Trade trade) throws IOException {
+        byte[] payload = op == OP_DELETE ? new byte[0] : JournalCodec.encodeTrade(trade);
+        ByteBuffer record = ByteBuffer.allocate(4 + 1 + 8 + payload.length);
+        record.putInt(1 + 8 + payload.length);
+        record.put(op);
+        record.putLong(trade.getId());
+        record.put(payload);
+        return record.array();
+    }
+
+    private void openLog() throws IOException {
+        if (out != null) {
+            return;
+        }
+        boolean fresh = !logFile.exists() || logFile.length() < HEADER_SIZE;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, !fresh)));
+        if (fresh) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+    }
+
+    private void closeLog() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    // Applies the intact records of one log and returns the length they cover; a torn tail is left in place
+    private static long replay(File file, History history) throws IOException, ClassNotFoundException {
+        Map<Long, Trade> byId = history.byId;
+        long validLength = HEADER_SIZE;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC) {
+                throw new IOException("Not a trade log: " + file);
+            }
+            byte version = in.readByte();
+            if (version != VERSION && version != JAVA_SERIALIZED_VERSION) {
+                throw new IOException("Unsupported trade log version " + version + " in " + file);
+            }
+            if (version == JAVA_SERIALIZED_VERSION) {
+                history.legacyFormat = true;
+            }
+
+            while (true) {
+                int length;
+                byte op;
+                long id;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    if (length < 9) {
+                        break;
+                    }
+                    op = in.readByte();
+                    id = in.readLong();
+                    payload = new byte[length - 9];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    // Torn record from an interrupted write, everything before it is intact
+                    break;
+                }
+
+                switch (op) {
+                    case OP_ADD:
+                    case OP_UPDATE:
+                        Trade trade = version == VERSION ? JournalCodec.decodeTrade(payload) : deserialize(payload);
+                        trade.setId(id);
+                        byId.put(id, trade);
+                        break;
+                    case OP_DELETE:
+                        byId.remove(id);
+                        break;
+                    default:
+                        throw new IOException("Unknown trade log record type " + op + " in " + file);
+                }
+                history.maxId = Math.max(history.maxId, id);
+                validLength += 4 + length;
+                history.records++;
+            }
+        }
+        return validLength;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Trade> parseSnapshot(ByteBuffer payload) throws IOException, ClassNotFoundException {
+        if (!JournalCodec.isJavaSerialized(payload)) {
+            return JournalCodec.readTrades(payload);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(
+                payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()))) {
+            return (List<Trade>) ois.readObject();
+        }
+    }
+
+    private void writeSnapshot(List<Trade> trades) throws IOException {
+        AtomicFiles.write(snapshotFile, out -> JournalCodec.writeTrades(out, trades));
+    }
+
+    // Records written before the binary codec carried a serialized Trade
+    private static Trade deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (Trade) ois.readObject();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+
+/**
+ * Search box backend for the trade table.
+ *
+ * Each trade's searchable fields are lower-cased once, when the trade is
+ * added or edited, instead of on every keystroke. Keystrokes are debounced
+ * and the match runs on a background thread over an array snapshot of those
+ * keys; the FX thread only receives the finished set of matching trade ids
+ * and installs a predicate that tests membership.
+ *
+ * A trade also matches when the notes index finds the query in its notes or
+ * in the notes of its setup or entry type. The notes index is kept and
+ * queried on the same background thread, as part of the match.
+ */
+public class TradeSearch extends TradeAggregate<TradeSearch.Key> {
+    private static final Duration DEBOUNCE = Duration.millis(150);
+    private static final String ALL = "All";
+    private static final char FIELD_SEPARATOR = '\u0001';
+
+    // Also applies the notes index's changes, so a search runs after every change queued before it
+    static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "trade-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static final class Key {
+        final long id;
+        final String text;
+        final String setup;
+        final String entryType;
+        final Trade.Status status;
+
+        Key(long id, String setup, String entryType, String text, Trade.Status status) {
+            this.id = id;
+            this.setup = setup;
+            this.entryType = entryType;
+            this.text = text;
+            this.status = status;
+        }
+
+        // A null status filter lets every status through
+        boolean matches(String query, NotesIndex.Result notes, Trade.Status statusFilter) {
+            if (statusFilter != null && statusFilter != status) {
+                return false;
+            }
+            if (query.isEmpty() || text.contains(query)) {
+                return true;
+            }
+            return notes != null && (notes.containsTrade(id)
+                    || notes.getSetups().contains(setup) || notes.getEntryTypes().contains(entryType));
+        }
+    }
+
+    private final Supplier<NotesIndex> notesIndex;
+
+    private Consumer<Predicate<Trade>> publisher;
+    private PauseTransition debounce;
+    private String rawQuery = "";
+    private String query = "";
+    private Trade.Status statusFilter;
+    private Key[] snapshot;
+    private long generation;
+    private Future<?> running;
+
+    public TradeSearch(Supplier<NotesIndex> notesIndex) {
+        this.notesIndex = notesIndex;
+    }
+
+    // Receives the predicate to install on the table's FilteredList; null shows every trade
+    public void setPublisher(Consumer<Predicate<Trade>> publisher) {
+        this.publisher = publisher;
+    }
+
+    public void setQuery(String text) {
+        rawQuery = text != null ? text : "";
+        query = normalize(text);
+        schedule();
+    }
+
+    // Re-runs an active search, e.g. after setup or entry type notes were saved
+    public void refresh() {
+        if (isActive()) {
+            search();
+        }
+    }
+
+    public void setStatusFilter(String status) {
+        statusFilter = status == null || ALL.equals(status) ? null : Trade.Status.parse(status);
+        // A combo box change is a single event, no need to wait
+        search();
+    }
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private boolean isActive() {
+        return !query.isEmpty() || statusFilter != null;
+    }
+
+    private void schedule() {
+        if (debounce == null) {
+            debounce = new PauseTransition(DEBOUNCE);
+            debounce.setOnFinished(e -> search());
+        }
+        debounce.playFromStart();
+    }
+
+    private void search() {
+        if (debounce != null) {
+            debounce.stop();
+        }
+        long current = ++generation;
+        if (running != null) {
+            running.cancel(true);
+        }
+        if (!isActive()) {
+            publish(current, null);
+            return;
+        }
+
+        if (snapshot == null) {
+            snapshot = states().toArray(new Key[0]);
+        }
+        Key[] keys = snapshot;
+        // Getting the index only queues its build; the search itself runs with the match below
+        NotesIndex index = !query.isEmpty() ? notesIndex.get() : null;
+        String raw = rawQuery;
+        String q = query;
+        Trade.Status status = statusFilter;
+
+        running = EXECUTOR.submit(() -> {
+            NotesIndex.Result notes = index != null ? index.search(raw) : null;
+            BitSet matches = new BitSet();
+            for (int i = 0; i < keys.length; i++) {
+                if ((i & 0xFFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (keys[i].matches(q, notes, status)) {
+                    matches.set(index(keys[i].id));
+                }
+            }
+            Platform.runLater(() -> publish(current, trade -> matches.get(index(trade.getId()))));
+        });
+    }
+
+    private void publish(long searchGeneration, Predicate<Trade> predicate) {
+        // A newer search has started since this one was submitted
+        if (searchGeneration != generation || publisher == null) {
+            return;
+        }
+        publisher.accept(predicate);
+    }
+
+    // Ids are assigned sequentially from 1, far below the BitSet limit
+    private static int index(long id) {
+        return (int) Math.min(id, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected Key add(Trade trade) {
+        String setup = normalize(trade.getSetup());
+        String entryType = normalize(trade.getEntryType());
+        String text = normalize(trade.getSymbol()) + FIELD_SEPARATOR + setup + FIELD_SEPARATOR + entryType;
+        return new Key(trade.getId(), setup, entryType, text, trade.getStatusValue());
+    }
+
+    @Override
+    protected void remove(Key key) {
+    }
+
+    @Override
+    protected void reset() {
+        snapshot = null;
+    }
+
+    @Override
+    protected void changed() {
+        snapshot = null;
+        // Keep an active search in step with added and edited trades
+        if (isActive()) {
+            schedule();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+
+/**
+ * Running totals behind the dashboard overview. Every figure is read in
+ * constant time; the totals are adjusted as trades are added, edited and
+ * deleted.
+ */
+public class TradeStatistics extends TradeAggregate<TradeStatistics.Contribution> {
+
+    static final class Contribution {
+        final double returns;
+        final boolean win;
+        final boolean loss;
+
+        Contribution(double returns, boolean win, boolean loss) {
+            this.returns = returns;
+            this.win = win;
+            this.loss = loss;
+        }
+    }
+
+    private int totalTrades;
+    private int winningTrades;
+    private int losingTrades;
+    private double totalProfit;
+    private double winReturns;
+    private double lossReturns;
+
+    @Override
+    protected Contribution add(Trade trade) {
+        Trade.Status status = trade.getStatusValue();
+        Contribution contribution = new Contribution(trade.getReturns(), status == Trade.Status.WIN, status == Trade.Status.LOSS);
+        apply(contribution, 1);
+        return contribution;
+    }
+
+    @Override
+    protected void remove(Contribution contribution) {
+        apply(contribution, -1);
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        totalTrades += sign;
+        totalProfit += sign * contribution.returns;
+        if (contribution.win) {
+            winningTrades += sign;
+            winReturns += sign * contribution.returns;
+        }
+        if (contribution.loss) {
+            losingTrades += sign;
+            lossReturns += sign * contribution.returns;
+        }
+    }
+
+    @Override
+    protected void reset() {
+        totalTrades = 0;
+        winningTrades = 0;
+        losingTrades = 0;
+        totalProfit = 0;
+        winReturns = 0;
+        lossReturns = 0;
+    }
+
+    public int getTotalTrades() {
+        return totalTrades;
+    }
+
+    public int getWinningTrades() {
+        return winningTrades;
+    }
+
+    // Everything that is not a win, as the overview has always counted it
+    public int getNonWinningTrades() {
+        return totalTrades - winningTrades;
+    }
+
+    public int getLosingTrades() {
+        return losingTrades;
+    }
+
+    public double getWinRate() {
+        return totalTrades > 0 ? (double) winningTrades / totalTrades * 100 : 0;
+    }
+
+    public double getTotalProfit() {
+        return totalProfit;
+    }
+
+    public double getAverageWin() {
+        return winningTrades > 0 ? winReturns / winningTrades : 0;
+    }
+
+    public double getAverageLoss() {
+        return losingTrades > 0 ? lossReturns / losingTrades : 0;
+    }
+
+    // Absolute average win over average loss, or NaN when either side has no trades
+    public double getRiskRewardRatio() {
+        double avgWin = getAverageWin();
+        double avgLoss = getAverageLoss();
+        return avgWin != 0 && avgLoss != 0 ? Math.abs(avgWin / avgLoss) : Double.NaN;
+    }
+}
@@ -0,0 +1,42 @@
+package com.tradingjournal;
+
+import com.tradingjournal.TradingJournalApp.Trade;
+import java.io.IOException;
+import java.util.List;
+import javafx.collections.ObservableList;
+
+/**
+ * Storage engine behind DataManager for one account's trades.
+ *
+ * open() returns the list DataManager exposes to the UI. DataManager mutates
+ * that list first and then reports the change here, on the JavaFX thread.
+ * The engine reads what it needs from the trades right away and returns the
+ * write for DataManager's background writer, which must not touch the
+ * trades again; null means there is nothing left to write.
+ */
+public interface TradeStore {
+
+    /** A trade list that finds a trade by id without going through every row. */
+    interface IndexedList {
+        Trade findById(long id);
+    }
+
+    boolean exists();
+
+    ObservableList<Trade> open() throws Exception;
+
+    void assignId(Trade trade);
+
+    PersistenceQueue.Write tradesAdded(List<Trade> added) throws IOException;
+
+    PersistenceQueue.Write tradeUpdated(Trade trade) throws IOException;
+
+    PersistenceQueue.Write tradeDeleted(Trade trade) throws IOException;
+
+    PersistenceQueue.Write tradesReplaced(List<Trade> trades) throws IOException;
+
+    void close();
+
+    // Removes the engine's files after its trades were migrated to another engine
+    void delete() throws IOException;
+}
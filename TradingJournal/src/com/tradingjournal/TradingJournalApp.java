@@ -1,6 +1,7 @@
 package com.tradingjournal;
 
 import javafx.application.Application;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -12,7 +13,6 @@ import javafx.scene.chart.*;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -20,22 +20,23 @@ import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Callback;
+import javafx.util.StringConverter;
 import javafx.geometry.Side;
 import javafx.scene.Node;
 import javafx.scene.Cursor;
 import javafx.scene.shape.Rectangle;
 import java.io.*;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 
 public class TradingJournalApp extends Application {
 
@@ -45,24 +46,77 @@ public class TradingJournalApp extends Application {
     // Model classes
     public static class Trade implements Serializable {
 
+        public enum Side {
+            LONG, SHORT;
+
+            // Null for anything that is not a side, like the empty CSV field
+            public static Side parse(String value) {
+                if (value == null) {
+                    return null;
+                }
+                switch (value.trim().toUpperCase()) {
+                    case "LONG":
+                        return LONG;
+                    case "SHORT":
+                        return SHORT;
+                    default:
+                        return null;
+                }
+            }
+        }
+
+        public enum Status {
+            WIN, LOSS;
+
+            public static Status parse(String value) {
+                return value != null && value.trim().equalsIgnoreCase("WIN") ? WIN : LOSS;
+            }
+        }
+
         private static final long serialVersionUID = 1L;
+
+        // Side and status were Strings when older journals were written; keep that serialized form
+        private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", long.class),
+            new ObjectStreamField("balance", double.class),
+            new ObjectStreamField("status", String.class),
+            new ObjectStreamField("date", LocalDate.class),
+            new ObjectStreamField("duration", String.class),
+            new ObjectStreamField("symbol", String.class),
+            new ObjectStreamField("entry", double.class),
+            new ObjectStreamField("exit", double.class),
+            new ObjectStreamField("size", double.class),
+            new ObjectStreamField("side", String.class),
+            new ObjectStreamField("returns", double.class),
+            new ObjectStreamField("returnPercentage", double.class),
+            new ObjectStreamField("setup", String.class),
+            new ObjectStreamField("entryType", String.class),
+            new ObjectStreamField("images", List.class),
+            new ObjectStreamField("notes", String.class)
+        };
+
+        private long id;
   private double balance;
-        private String status;
+        private Status status = Status.LOSS;
         private LocalDate date;
         private String duration;
         private String symbol;
         private double entry;
         private double exit;
         private double size;
-        private String side;
+        private Side side;
         private double returns;
         private double returnPercentage;
         private String setup;
         private String entryType;
         private List<String> images;
         private String notes;
+        // R-multiple cache and the account balance / risk it was computed for
+        private transient double rMultiple;
+        private transient double rMultipleBalance = Double.NaN;
+        private transient double rMultipleRisk = Double.NaN;
    public double getBalance() { return balance; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public void setBalance(double balance) { this.balance = balance; rMultipleBalance = Double.NaN; }
         public Trade() {
             this.images = new ArrayList<>();
         }
@@ -70,60 +124,125 @@ public class TradingJournalApp extends Application {
         public Trade(String status, LocalDate date, String duration, String symbol, 
                 double entry, double exit, double size, String side, 
                 String setup, String entryType, double returns, double balance) {
-        this.status = status;
         this.date = date;
         this.duration = duration;
         this.symbol = symbol;
         this.entry = entry;
         this.exit = exit;
         this.size = size;
-        this.side = side;
+        this.side = Side.parse(side);
         this.setup = setup;
         this.entryType = entryType;
         this.returns = returns;
         this.balance = balance;
         this.images = new ArrayList<>();
         
-        // Calculate percentage
-        updateReturnPercentage();
-        
-        // Set status based on returns
-        this.status = returns >= 0 ? "WIN" : "LOSS";
+        // Calculate percentage and status
+        calculateReturns();
     }
 
 public void updateReturnPercentage() {
-        if (entry > 0 && size > 0) { if (side.equals("LONG")) {
-               // returns = (exit - entry) * size;
-                returnPercentage = ((exit - entry) / entry) * 100;
-            } else if (side.equals("SHORT")) {
-                //returns = (entry - exit) * size;
-                returnPercentage = ((entry - exit) / entry) * 100;
-            }} else {
-            returnPercentage = 0;
-        }
+        calculateReturns();
     }
+        // Derived values are computed here, once per change of entry, exit or side, and read from fields
         public void calculateReturns() {
-            if (side.equals("LONG")) {
+            if (entry > 0 && side == Side.LONG) {
                // returns = (exit - entry) * size;
                 returnPercentage = ((exit - entry) / entry) * 100;
-            } else if (side.equals("SHORT")) {
+            } else if (entry > 0 && side == Side.SHORT) {
                 //returns = (entry - exit) * size;
                 returnPercentage = ((entry - exit) / entry) * 100;
+            } else {
+                returnPercentage = 0;
             }
 
             // Set status based on returns
-            status = returnPercentage > 0 ? "WIN" : "LOSS";
+            status = returnPercentage > 0 ? Status.WIN : Status.LOSS;
+        }
+
+        // Returns divided by the amount risked; recomputed only when returns, balance or the inputs change
+        public double getRMultiple(double accountBalance, double averageRisk) {
+            if (accountBalance != rMultipleBalance || averageRisk != rMultipleRisk) {
+                double riskBalance = balance > 0 ? balance : accountBalance;
+                double risk = riskBalance * averageRisk / 100;
+                rMultiple = risk > 0 ? returns / risk : 0;
+                rMultipleBalance = accountBalance;
+                rMultipleRisk = averageRisk;
+            }
+            return rMultiple;
+        }
+
+        // Older saves stored whatever status the last write happened to hold, so it is derived again
+        @SuppressWarnings("unchecked")
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField fields = in.readFields();
+            id = fields.get("id", 0L);
+            balance = fields.get("balance", 0.0);
+            date = (LocalDate) fields.get("date", null);
+            duration = (String) fields.get("duration", null);
+            symbol = (String) fields.get("symbol", null);
+            entry = fields.get("entry", 0.0);
+            exit = fields.get("exit", 0.0);
+            size = fields.get("size", 0.0);
+            side = Side.parse((String) fields.get("side", null));
+            returns = fields.get("returns", 0.0);
+            setup = (String) fields.get("setup", null);
+            entryType = (String) fields.get("entryType", null);
+            images = (List<String>) fields.get("images", null);
+            notes = (String) fields.get("notes", null);
+            if (images == null) {
+                images = new ArrayList<>();
+            }
+            rMultipleBalance = Double.NaN;
+            rMultipleRisk = Double.NaN;
+            calculateReturns();
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("id", id);
+            fields.put("balance", balance);
+            fields.put("status", getStatus());
+            fields.put("date", date);
+            fields.put("duration", duration);
+            fields.put("symbol", symbol);
+            fields.put("entry", entry);
+            fields.put("exit", exit);
+            fields.put("size", size);
+            fields.put("side", getSide());
+            fields.put("returns", returns);
+            fields.put("returnPercentage", returnPercentage);
+            fields.put("setup", setup);
+            fields.put("entryType", entryType);
+            fields.put("images", images);
+            fields.put("notes", notes);
+            out.writeFields();
         }
 
         // Getters and Setters
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
         public String getStatus() {
-            calculateReturns();
+            return status.name();
+        }
+
+        public Status getStatusValue() {
             return status;
         }
 
+        public boolean isWin() {
+            return status == Status.WIN;
+        }
+
+        // Overrides the derived status until entry, exit or side change again
         public void setStatus(String status) {
-           calculateReturns();
-            this.status = status;
+            this.status = Status.parse(status);
         }
 
         public LocalDate getDate() {
@@ -162,13 +281,7 @@ public void updateReturnPercentage() {
         }
         public void setReturns(double returns) {
         this.returns = returns;
-        
-        // Update status based on returns
-        this.status = returns >= 0 ? "WIN" : "LOSS";
-        
-        // Recalculate percentage
-          updateReturnPercentage();
-        
+        rMultipleBalance = Double.NaN;
     }
 
         public double getExit() {
@@ -177,7 +290,7 @@ public void updateReturnPercentage() {
 
         public void setExit(double exit) {
             this.exit = exit;
-            
+            calculateReturns();
         }
 
         public double getSize() {
@@ -190,10 +303,18 @@ public void updateReturnPercentage() {
         }
 
         public String getSide() {
+            return side != null ? side.name() : null;
+        }
+
+        public Side getSideValue() {
             return side;
         }
 
         public void setSide(String side) {
+            setSide(Side.parse(side));
+        }
+
+        public void setSide(Side side) {
             this.side = side;
             calculateReturns();
         }
@@ -253,6 +374,13 @@ public void updateReturnPercentage() {
     private List<String> symbols;
     private List<SetupEntryDetails> setupDetails;
     private List<SetupEntryDetails> entryTypeDetails;
+    private boolean useMappedStorage;
+    // Funded-challenge limits as percentages of the balance, the risk limit as a multiple of the average risk; 0 is off
+    private double maxDailyLoss;
+    private double maxDrawdown;
+    private double profitTarget;
+    private int minTradingDays;
+    private double maxRiskMultiple;
 
         public JournalSettings() {
             this.symbols = new ArrayList<>(Arrays.asList("XAUUSD", "XLMUSD", "EURUSD", "GBPUSD", "NAS100"));
@@ -333,19 +461,92 @@ public List<SetupEntryDetails> getSetupDetails() {
     public void setEntryTypeDetails(List<SetupEntryDetails> entryTypeDetails) {
         this.entryTypeDetails = entryTypeDetails;
     } 
+
+    // Keep trades in memory-mapped column files instead of the trade log
+    public boolean isUseMappedStorage() {
+        return useMappedStorage;
+    }
+
+    public void setUseMappedStorage(boolean useMappedStorage) {
+        this.useMappedStorage = useMappedStorage;
+    }
+
+    public double getMaxDailyLoss() {
+        return maxDailyLoss;
+    }
+
+    public void setMaxDailyLoss(double maxDailyLoss) {
+        this.maxDailyLoss = maxDailyLoss;
+    }
+
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public void setMaxDrawdown(double maxDrawdown) {
+        this.maxDrawdown = maxDrawdown;
+    }
+
+    public double getProfitTarget() {
+        return profitTarget;
+    }
+
+    public void setProfitTarget(double profitTarget) {
+        this.profitTarget = profitTarget;
+    }
+
+    public int getMinTradingDays() {
+        return minTradingDays;
+    }
+
+    public void setMinTradingDays(int minTradingDays) {
+        this.minTradingDays = minTradingDays;
+    }
+
+    public double getMaxRiskMultiple() {
+        return maxRiskMultiple;
+    }
+
+    public void setMaxRiskMultiple(double maxRiskMultiple) {
+        this.maxRiskMultiple = maxRiskMultiple;
+    }
     }
 
     private class DataManager {
         // In both AccountManager and DataManager classes
 
         private static final String DATA_DIR = "E:\\netbeansprojects\\TradingJournal\\TradingJournalData";
-        private static final String TRADES_FILE = "trades.dat";
         private static final String SETTINGS_FILE = "settings.dat";
         private static final String IMAGES_DIR = "images";
+        private static final int LOAD_BATCH_SIZE = 5000;
         // Add accountManager reference
         private AccountManager accountManager;
+        // Pooled managers outlive the switch away from their account, so each keeps its own
+        private final Account account;
         private JournalSettings settings;
         private ObservableList<Trade> trades;
+        private TradeStore tradeStore;
+        private TradeDictionary dictionary;
+        // Replaced by the ones built on the loader thread when the mapped store brings its own list
+        private TradeStatistics statistics = new TradeStatistics();
+        private RuleMonitor ruleMonitor = new RuleMonitor(this::getSettings);
+        private DateIndex dateIndex = new DateIndex();
+        private PnlTimeline pnlTimeline = new PnlTimeline(dateIndex);
+        private TradeSearch tradeSearch = new TradeSearch(this::getNotesIndex);
+        private NotesIndex notesIndex;
+        private TopTrades topTrades;
+        private EquityCurve equityCurve;
+        private TradeFingerprints fingerprints;
+        private ThumbnailCache thumbnails;
+        private ImageStore imageStore;
+        // Set when settings or trades failed to load, so images they reference are not collected
+        private boolean loadFailed;
+        private boolean tradesLoaded;
+        // Trades read from the log that are still being added to the list; null once all are in
+        private List<Trade> streaming;
+        // Set once the account's data was saved for a switch or exit
+        private boolean closed;
+        private final long created = System.nanoTime();
 
         private void ensureDirectoryExists(String path) {
             File dir = new File(path);
@@ -360,12 +561,13 @@ public List<SetupEntryDetails> getSetupDetails() {
         }
 
         private String getAccountDir() {
-            return DATA_DIR + File.separator + accountManager.getCurrentAccount().getId();
+            return DATA_DIR + File.separator + account.getId();
         }
 
-        public DataManager(AccountManager accountManager) {
+        public DataManager(AccountManager accountManager, Account account) {
     this.accountManager = accountManager;
-    this.trades = FXCollections.observableArrayList();
+    this.account = account;
+    this.trades = new IndexedTradeList();
     
     // Always create a new settings object first
     this.settings = new JournalSettings();
@@ -395,41 +597,199 @@ public List<SetupEntryDetails> getSetupDetails() {
     }
 }
 
+        // First loading phase: settings only, so the window can be built straight away
         public void loadData() {
             try {
+                long start = System.nanoTime();
                 loadSettings();
-                loadTrades();
+                dictionary = new TradeDictionary(settings);
+                statistics.attach(trades);
+                ruleMonitor.attach(trades);
+                dateIndex.attach(trades);
+                tradeSearch.attach(trades);
+                logPhase("settings loaded", start);
             } catch (Exception e) {
+                loadFailed = true;
                 e.printStackTrace();
                 System.err.println("Error in loadData: " + e.getMessage() + " at " + e.getStackTrace()[0]);
             }
         }
 
-        @SuppressWarnings("unchecked")
-        private void loadTrades() {
-            try {
-                String filePath = getAccountDir() + File.separator + TRADES_FILE;
-                System.out.println("Loading trades from: " + filePath);
-                File tradesFile = new File(filePath);
-
-                if (tradesFile.exists()) {
-                    try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(tradesFile))) {
-                        List<Trade> loadedTrades = (List<Trade>) ois.readObject();
-                        trades.setAll(loadedTrades);
-                        System.out.println("Successfully loaded " + loadedTrades.size() + " trades");
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        System.err.println("Error loading trades from existing file: " + e.getMessage() + " at " + e.getStackTrace()[0]);
-                        showAlertHere("Error", "Failed to load trades data: " + e.getMessage());
+        /**
+         * Second loading phase: the trades are read on a background thread and
+         * then added to the list the table already shows, one batch per pulse,
+         * so the window stays responsive however long the history is.
+         *
+         * @param listReplaced run when the store brings its own list (the mapped store) for the table to show instead
+         * @param loaded run once every trade is in the list
+         */
+        public void loadTradesInBackground(Runnable listReplaced, Runnable loaded) {
+            String dirPath = getAccountDir();
+            System.out.println("Loading trades from: " + dirPath);
+            File accountDir = new File(dirPath);
+            boolean mapped = settings.isUseMappedStorage();
+            TradeStore preferred = mapped ? new MappedTradeStore(accountDir) : new TradeLog(accountDir);
+            TradeStore other = mapped ? new TradeLog(accountDir) : new MappedTradeStore(accountDir);
+            // Created here, as the FX thread owns it, for the image store the loader builds
+            ThumbnailCache cache = getThumbnails();
+            long start = System.nanoTime();
+
+            Task<LoadedTrades> reader = new Task<>() {
+                @Override
+                protected LoadedTrades call() throws Exception {
+                    if (!preferred.exists() && other.exists()) {
+                        migrateTrades(other, preferred);
                     }
+                    // The log is only read here; the list is filled on the FX thread
+                    if (preferred instanceof TradeLog) {
+                        return new LoadedTrades(((TradeLog) preferred).load());
+                    }
+                    LoadedTrades result = new LoadedTrades(preferred.open());
+                    result.buildAggregates(cache);
+                    return result;
+                }
+            };
+            reader.setOnSucceeded(e -> {
+                tradeStore = preferred;
+                if (closed) {
+                    // The account was switched away from while it was loading
+                    persistenceQueue.submit(preferred::close);
+                    return;
+                }
+                LoadedTrades result = reader.getValue();
+                logPhase("read " + result.trades.size() + " trades", start);
+                if (preferred instanceof TradeLog) {
+                    streaming = result.trades;
+                    publishBatch(result.trades, 0, System.nanoTime(), loaded);
                 } else {
-                    System.out.println("No trades file exists yet at: " + filePath);
+                    trades = (ObservableList<Trade>) result.trades;
+                    installAggregates(result);
+                    listReplaced.run();
+                    finishLoading(loaded);
+                }
+            });
+            reader.setOnFailed(e -> {
+                if (closed) {
+                    return;
+                }
+                Throwable error = reader.getException();
+                // As before, the store stays usable so new trades can still be recorded
+                tradeStore = preferred;
+                loadFailed = true;
+                error.printStackTrace();
+                System.err.println("Error loading trades from existing file: " + error.getMessage() + " at " + error.getStackTrace()[0]);
+                showAlertHere("Error", "Failed to load trades data: " + error.getMessage());
+                finishLoading(loaded);
+            });
+
+            Thread thread = new Thread(reader, "trade-loader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void publishBatch(List<Trade> loaded, int from, long start, Runnable done) {
+            if (streaming != loaded) {
+                // replaceTrades took over the list, or the account was switched away from
+                return;
+            }
+            int to = Math.min(from + LOAD_BATCH_SIZE, loaded.size());
+            List<Trade> batch = loaded.subList(from, to);
+            for (Trade trade : batch) {
+                dictionary.intern(trade);
+            }
+            trades.addAll(batch);
+            if (to < loaded.size()) {
+                // Let the pulse render and handle input before the next batch
+                Platform.runLater(() -> publishBatch(loaded, to, start, done));
+                return;
+            }
+            streaming = null;
+            logPhase("showed " + loaded.size() + " trades in " + (loaded.size() + LOAD_BATCH_SIZE - 1) / LOAD_BATCH_SIZE
+                    + " batches", start);
+            System.out.println("Trade dictionary holds " + dictionary.size() + " distinct values");
+            finishLoading(done);
+        }
+
+        private void finishLoading(Runnable loaded) {
+            tradesLoaded = true;
+            logPhase("ready", created);
+            // Picks up images orphaned before this version counted references
+            getImageStore().scheduleCollection();
+            loaded.run();
+        }
+
+        // Swaps in the aggregates built over the mapped list; the ones built on first use are built again when next used
+        private void installAggregates(LoadedTrades loaded) {
+            for (TradeAggregate<?> aggregate : Arrays.asList(statistics, ruleMonitor, dateIndex, tradeSearch,
+                    notesIndex, fingerprints, topTrades, imageStore, equityCurve)) {
+                if (aggregate != null) {
+                    aggregate.detach();
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.err.println("Error in loadTrades: " + e.getMessage() + " at " + e.getStackTrace()[0]);
-                showAlertHere("Error", "Failed to load trades data: " + e.getMessage());
             }
+            loaded.ruleMonitor.setListener(ruleMonitor.getListener());
+            statistics = loaded.statistics;
+            ruleMonitor = loaded.ruleMonitor;
+            dateIndex = loaded.dateIndex;
+            pnlTimeline = loaded.pnlTimeline;
+            tradeSearch = loaded.tradeSearch;
+            imageStore = loaded.imageStore;
+            imageStore.updateItems(settings);
+            notesIndex = null;
+            fingerprints = null;
+            topTrades = null;
+            equityCurve = null;
+        }
+
+        /**
+         * What the loader thread hands to the FX thread. The mapped store's
+         * list builds a trade for every row an aggregate reads, so its
+         * aggregates are built here, before the list is shown, rather than
+         * attached to it on the FX thread.
+         */
+        private final class LoadedTrades {
+            private final List<Trade> trades;
+            private TradeStatistics statistics;
+            private RuleMonitor ruleMonitor;
+            private DateIndex dateIndex;
+            private PnlTimeline pnlTimeline;
+            private TradeSearch tradeSearch;
+            private ImageStore imageStore;
+
+            LoadedTrades(List<Trade> trades) {
+                this.trades = trades;
+            }
+
+            void buildAggregates(ThumbnailCache cache) {
+                ObservableList<Trade> list = (ObservableList<Trade>) trades;
+                statistics = new TradeStatistics();
+                ruleMonitor = new RuleMonitor(DataManager.this::getSettings);
+                dateIndex = new DateIndex();
+                pnlTimeline = new PnlTimeline(dateIndex);
+                tradeSearch = new TradeSearch(DataManager.this::getNotesIndex);
+                imageStore = newImageStore(cache);
+                for (TradeAggregate<?> aggregate : List.of(statistics, ruleMonitor, dateIndex, tradeSearch, imageStore)) {
+                    aggregate.attach(list);
+                }
+            }
+        }
+
+        public boolean isTradesLoaded() {
+            return tradesLoaded;
+        }
+
+        // Copies the trades on the FX thread for reading on another one
+        public Callable<List<Trade>> snapshotTrades() {
+            if (tradeStore instanceof MappedTradeStore) {
+                return ((MappedTradeStore) tradeStore).snapshot();
+            }
+            List<Trade> copy = new ArrayList<>(trades);
+            return () -> copy;
+        }
+
+        private void logPhase(String phase, long start) {
+            long now = System.nanoTime();
+            System.out.println("Account " + account.getName() + ": " + phase + " in "
+                    + (now - start) / 1_000_000 + " ms (" + (now - created) / 1_000_000 + " ms since opening)");
         }
 
         private void loadSettings() {
@@ -438,11 +798,16 @@ public List<SetupEntryDetails> getSetupDetails() {
                 System.out.println("Loading settings from: " + filePath);
                 File settingsFile = new File(filePath);
 
-                if (settingsFile.exists()) {
-                    try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(settingsFile))) {
-                        settings = (JournalSettings) ois.readObject();
+                if (AtomicFiles.exists(settingsFile)) {
+                    try {
+                        if (settingsFile.exists() && JournalCodec.isJavaSerialized(settingsFile)) {
+                            migrateLegacySettings(settingsFile);
+                        } else {
+                            settings = JournalCodec.readSettings(settingsFile);
+                        }
                         System.out.println("Successfully loaded settings");
                     } catch (Exception e) {
+                        loadFailed = true;
                         e.printStackTrace();
                         System.err.println("Error loading settings from existing file: " + e.getMessage() + " at " + e.getStackTrace()[0]);
                         showAlertHere("Error", "Failed to load settings data: " + e.getMessage());
@@ -451,15 +816,43 @@ public List<SetupEntryDetails> getSetupDetails() {
                     System.out.println("No settings file exists yet at: " + filePath);
                 }
             } catch (Exception e) {
+                loadFailed = true;
                 e.printStackTrace();
                 System.err.println("Error in loadSettings: " + e.getMessage() + " at " + e.getStackTrace()[0]);
                 showAlertHere("Error", "Failed to load settings data: " + e.getMessage());
             }
         }
 
+        // Moves an account's trades over when the storage engine setting changes
+        private void migrateTrades(TradeStore from, TradeStore to) throws Exception {
+            List<Trade> existing = new ArrayList<>(from.open());
+            from.close();
+            System.out.println("Migrating " + existing.size() + " trades to " + to.getClass().getSimpleName());
+
+            ObservableList<Trade> target = to.open();
+            target.setAll(existing);
+            PersistenceQueue.Write write = to.tradesReplaced(existing);
+            if (write != null) {
+                write.run();
+            }
+            to.close();
+            from.delete();
+        }
+
+        // One-time conversion of a settings file written with Java serialization
+        private void migrateLegacySettings(File settingsFile) throws IOException, ClassNotFoundException {
+            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(settingsFile))) {
+                settings = (JournalSettings) ois.readObject();
+            }
+            System.out.println("Migrating settings from Java serialization to binary format");
+            Files.copy(settingsFile.toPath(), Paths.get(settingsFile.getPath() + ".legacy"),
+                    StandardCopyOption.REPLACE_EXISTING);
+            JournalCodec.writeSettings(settingsFile, settings);
+        }
+
         public void saveData() {
             try {
-                System.out.println("Saving all data for account: " + accountManager.getCurrentAccount().getName());
+                System.out.println("Saving all data for account: " + account.getName());
                 saveSettings();
                 saveTrades();
             } catch (Exception e) {
@@ -468,30 +861,49 @@ public List<SetupEntryDetails> getSetupDetails() {
             }
         }
 
+        // Trades are persisted as they change, so saving only drains the writer and closes the store
         private void saveTrades() {
-            try {
-                String dirPath = getAccountDir();
-                System.out.println("Saving trades to directory: " + dirPath);
-                ensureDirectoryExists(dirPath);
-
-                String filePath = dirPath + File.separator + TRADES_FILE;
-                System.out.println("Trades file path: " + filePath);
-                File tradesFile = new File(filePath);
+            closed = true;
+            streaming = null;
+            if (tradeStore != null) {
+                TradeStore store = tradeStore;
+                persistenceQueue.submit(store::close);
+                persistenceQueue.flush();
+                System.out.println("Trade store flushed for account: " + account.getName());
+            }
+        }
 
-                try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(tradesFile))) {
-                    List<Trade> tradeList = new ArrayList<>(trades);
-                    oos.writeObject(tradeList);
-                    System.out.println("Successfully saved " + tradeList.size() + " trades");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    System.err.println("Error writing trades data: " + e.getMessage() + " at " + e.getStackTrace()[0]);
-                    showAlertHere("Error", "Failed to save trades data: " + e.getMessage());
-                }
-            } catch (Exception e) {
+        // Reports a change to the store here on the FX thread, so the trades are encoded before the UI can edit them
+        // again, and runs the write it returns on the background writer; writes with the same key coalesce
+        private void persistTrades(Object key, StoreChange change) {
+            PersistenceQueue.Write write;
+            try {
+                write = change.report();
+            } catch (IOException e) {
                 e.printStackTrace();
-                System.err.println("Error in saveTrades: " + e.getMessage() + " at " + e.getStackTrace()[0]);
+                System.err.println("Error encoding trades: " + e.getMessage() + " at " + e.getStackTrace()[0]);
                 showAlertHere("Error", "Failed to save trades data: " + e.getMessage());
+                return;
             }
+            if (write == null) {
+                return;
+            }
+            String accountDir = getAccountDir();
+            persistenceQueue.submit(key != null ? key : new Object(), () -> {
+                try {
+                    ensureDirectoryExists(accountDir);
+                    write.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    System.err.println("Error writing trades: " + e.getMessage() + " at " + e.getStackTrace()[0]);
+                    Platform.runLater(() -> showAlertHere("Error", "Failed to save trades data: " + e.getMessage()));
+                }
+            });
+        }
+
+        // A call to one of the TradeStore change methods
+        private interface StoreChange {
+            PersistenceQueue.Write report() throws IOException;
         }
 
         private void saveSettings() {
@@ -504,14 +916,18 @@ public List<SetupEntryDetails> getSetupDetails() {
                 System.out.println("Settings file path: " + filePath);
                 File settingsFile = new File(filePath);
 
-                try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(settingsFile))) {
-                    oos.writeObject(settings);
-                    System.out.println("Successfully saved settings");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    System.err.println("Error writing settings data: " + e.getMessage() + " at " + e.getStackTrace()[0]);
-                    showAlertHere("Error", "Failed to save settings data: " + e.getMessage());
-                }
+                // Encoded here so the writer never reads settings lists the UI may be editing
+                byte[] encoded = JournalCodec.encodeSettings(settings);
+                persistenceQueue.submit(settingsFile, () -> {
+                    try {
+                        AtomicFiles.write(settingsFile, encoded);
+                        System.out.println("Successfully saved settings");
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        System.err.println("Error writing settings data: " + e.getMessage() + " at " + e.getStackTrace()[0]);
+                        Platform.runLater(() -> showAlertHere("Error", "Failed to save settings data: " + e.getMessage()));
+                    }
+                });
             } catch (Exception e) {
                 e.printStackTrace();
                 System.err.println("Error in saveSettings: " + e.getMessage() + " at " + e.getStackTrace()[0]);
@@ -521,24 +937,12 @@ public List<SetupEntryDetails> getSetupDetails() {
 
         public String saveImage(File imageFile) {
             try {
-                String targetPath = getAccountDir() + File.separator + IMAGES_DIR + File.separator;
-                System.out.println("Saving image to: " + targetPath);
-                ensureDirectoryExists(targetPath);
-
-                String filename = System.currentTimeMillis() + "_" + imageFile.getName();
-                Path target = Paths.get(targetPath + filename);
-                System.out.println("Image target path: " + target);
-
-                try {
-                    Files.copy(imageFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
-                    System.out.println("Successfully saved image: " + target);
-                    return target.toString();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    System.err.println("Error copying image file: " + e.getMessage() + " at " + e.getStackTrace()[0]);
-                    showAlertHere("Error", "Failed to save image: " + e.getMessage());
-                    return null;
-                }
+                return getImageStore().store(imageFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.err.println("Error copying image file: " + e.getMessage() + " at " + e.getStackTrace()[0]);
+                showAlertHere("Error", "Failed to save image: " + e.getMessage());
+                return null;
             } catch (Exception e) {
                 e.printStackTrace();
                 System.err.println("Error in saveImage: " + e.getMessage() + " at " + e.getStackTrace()[0]);
@@ -551,13 +955,130 @@ public List<SetupEntryDetails> getSetupDetails() {
             return trades;
         }
 
+        // Built with the trades so its reference counts follow every later change
+        public ImageStore getImageStore() {
+            if (imageStore == null) {
+                imageStore = newImageStore(getThumbnails());
+                imageStore.updateItems(settings);
+                imageStore.attach(trades);
+            }
+            return imageStore;
+        }
+
+        private ImageStore newImageStore(ThumbnailCache cache) {
+            return new ImageStore(new File(getAccountDir() + File.separator + IMAGES_DIR),
+                    () -> tradesLoaded && !loadFailed, cache::evict);
+        }
+
+        public ThumbnailCache getThumbnails() {
+            if (thumbnails == null) {
+                thumbnails = new ThumbnailCache(new File(getAccountDir() + File.separator + IMAGES_DIR
+                        + File.separator + ThumbnailCache.THUMBNAIL_DIR));
+            }
+            return thumbnails;
+        }
+
+        public TradeStatistics getStatistics() {
+            return statistics;
+        }
+
+        public RuleMonitor getRuleMonitor() {
+            return ruleMonitor;
+        }
+
+        public DateIndex getDateIndex() {
+            return dateIndex;
+        }
+
+        // Built on the first notes search; the tokenizing, the costliest part, happens on the search thread
+        public NotesIndex getNotesIndex() {
+            if (notesIndex == null) {
+                notesIndex = new NotesIndex(TradeSearch.EXECUTOR);
+                notesIndex.indexSettings(settings);
+                notesIndex.attach(trades);
+            }
+            return notesIndex;
+        }
+
+        // Keeps a built notes index in step with a setup or entry type; one built later reads them from the settings
+        public void indexItemNotes(SetupEntryDetails item, NotesIndex.Kind kind) {
+            if (notesIndex != null) {
+                notesIndex.indexItem(item, kind);
+            }
+        }
+
+        public void unindexItemNotes(SetupEntryDetails item) {
+            if (notesIndex != null) {
+                notesIndex.removeItem(item);
+            }
+        }
+
+        // Built on the first append import and kept in step with the trades from then on
+        public TradeFingerprints getFingerprints() {
+            if (fingerprints == null) {
+                fingerprints = new TradeFingerprints();
+                fingerprints.attach(trades);
+            }
+            return fingerprints;
+        }
+
+        public TradeSearch getTradeSearch() {
+            return tradeSearch;
+        }
+
+        public PnlTimeline getPnlTimeline() {
+            return pnlTimeline;
+        }
+
+        // Built on first use so accounts that never open the dashboard don't pay for the index
+        public TopTrades getTopTrades() {
+            if (topTrades == null) {
+                topTrades = new TopTrades(this::getSettings);
+                topTrades.attach(trades);
+            }
+            return topTrades;
+        }
+
+        // Built when the dashboard first asks, then extended as trades are appended
+        public EquityCurve getEquityCurve() {
+            if (equityCurve == null) {
+                equityCurve = new EquityCurve(dateIndex, () -> getSettings().getAccountBalance());
+                equityCurve.attach(trades);
+            }
+            return equityCurve;
+        }
+
         public void addTrade(Trade trade) {
-            trades.add(trade);
-            saveTrades();
+            addTrades(Collections.singletonList(trade));
+        }
+
+        public void addTrades(List<Trade> newTrades) {
+            for (Trade trade : newTrades) {
+                tradeStore.assignId(trade);
+                dictionary.intern(trade);
+            }
+            trades.addAll(newTrades);
+            persistTrades(null, () -> tradeStore.tradesAdded(newTrades));
+        }
+
+        public void replaceTrades(List<Trade> newTrades) {
+            if (streaming != null) {
+                // The rest of the loaded history is being replaced anyway
+                streaming = null;
+                finishLoading(() -> { });
+            }
+            for (Trade trade : newTrades) {
+                trade.setId(0);
+                tradeStore.assignId(trade);
+                dictionary.intern(trade);
+            }
+            trades.setAll(newTrades);
+            persistTrades(null, () -> tradeStore.tradesReplaced(trades));
         }
 
         public void updateTrade(Trade trade) {
-            saveTrades();
+            dictionary.intern(trade);
+            persistTrades(tradeKey(trade), () -> tradeStore.tradeUpdated(trade));
           // Force the ObservableList to refresh
     int index = trades.indexOf(trade);
     if (index >= 0) {
@@ -567,9 +1088,34 @@ public List<SetupEntryDetails> getSetupDetails() {
     }
 }
 
+        // Same as updateTrade for each trade, with one pass over the list instead of one indexOf per trade
+        public void updateTrades(List<Trade> changed) {
+            Map<Long, Trade> byId = new HashMap<>();
+            for (Trade trade : changed) {
+                dictionary.intern(trade);
+                byId.put(trade.getId(), trade);
+                persistTrades(tradeKey(trade), () -> tradeStore.tradeUpdated(trade));
+            }
+            for (int i = 0; i < trades.size() && !byId.isEmpty(); i++) {
+                Trade trade = byId.remove(trades.get(i).getId());
+                if (trade != null) {
+                    trades.set(i, trade);
+                }
+            }
+        }
+
         public void deleteTrade(Trade trade) {
             trades.remove(trade);
-            saveTrades();
+            persistTrades(tradeKey(trade), () -> tradeStore.tradeDeleted(trade));
+        }
+
+        // An update or delete supersedes any earlier pending write of the same trade
+        private String tradeKey(Trade trade) {
+            return getAccountDir() + "#" + trade.getId();
+        }
+
+        public Account getAccount() {
+            return account;
         }
 
         public JournalSettings getSettings() {
@@ -578,6 +1124,13 @@ public List<SetupEntryDetails> getSetupDetails() {
 
         public void updateSettings() {
             saveSettings();
+            getImageStore().updateItems(settings);
+            // R-multiples depend on balance and risk
+            if (topTrades != null && topTrades.getRanking() == TopTrades.Ranking.R_MULTIPLE) {
+                topTrades.rebuild();
+            }
+            // So do the rule limits
+            ruleMonitor.rebuild();
         }
     }
 
@@ -587,14 +1140,24 @@ public List<SetupEntryDetails> getSetupDetails() {
     private BorderPane root;
     private TableView<Trade> tradeTable;
     private DataManager dataManager;
+    private DataManagerPool dataManagers;
     private FilteredList<Trade> filteredTrades;
+    private TextField searchField;
+    private ComboBox<String> statusFilterCombo;
+    private final PersistenceQueue persistenceQueue = new PersistenceQueue();
+    private Label saveStatusLabel;
+    private VBox ruleStatusBox;
+    private long shownFlagVersion = -1;
 
     @Override
     public void start(Stage primaryStage) {
+        long start = System.nanoTime();
         this.primaryStage = primaryStage;
         this.accountManager = new AccountManager();
-        this.dataManager = new DataManager(accountManager);
-        this.filteredTrades = new FilteredList<>(dataManager.getTrades(), p -> true);
+        this.dataManagers = new DataManagerPool();
+        // Once the account on screen is in, the ones used before it are loaded ahead
+        this.dataManager = dataManagers.acquire(accountManager.getCurrentAccount(),
+                () -> dataManagers.prefetch(accountManager.getRecentAccounts(DataManagerPool.CAPACITY - 1)));
 
         initUI();
 
@@ -603,6 +1166,137 @@ public List<SetupEntryDetails> getSetupDetails() {
         primaryStage.setMinWidth(1200);
         primaryStage.setMinHeight(800);
         primaryStage.show();
+        System.out.println("Startup: window shown in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+    }
+
+    // Reads an account's trades in the background; the table follows if the account is shown by then
+    private void loadAccountTrades(DataManager manager, Runnable loaded) {
+        manager.loadTradesInBackground(() -> {
+            if (manager == dataManager) {
+                // The mapped store reads rows from its own list, and comes with its own aggregates
+                bindTradeTable();
+                updateRuleStatus();
+            }
+        }, () -> {
+            if (manager == dataManager) {
+                tradeTable.setPlaceholder(null);
+            }
+            loaded.run();
+        });
+    }
+
+    // Points the table and the search box at the current account's trades
+    private void bindTradeTable() {
+        filteredTrades = new FilteredList<>(dataManager.getTrades(), p -> true);
+        tradeTable.setItems(filteredTrades);
+        tradeTable.setPlaceholder(dataManager.isTradesLoaded() ? null : createPlaceholder("Loading trades..."));
+
+        // Matching runs in the background; the result arrives as a predicate for the table
+        TradeSearch tradeSearch = dataManager.getTradeSearch();
+        tradeSearch.setPublisher(filteredTrades::setPredicate);
+        tradeSearch.setStatusFilter(statusFilterCombo.getValue());
+        tradeSearch.setQuery(searchField.getText());
+    }
+
+    /**
+     * DataManagers of the most recently used accounts, kept loaded so that
+     * switching back to one only rebinds the table. The least recently used
+     * manager beyond the capacity is saved and dropped; the one on screen
+     * never is. After startup the accounts used last are loaded ahead, one
+     * after the other, in the background.
+     */
+    private class DataManagerPool {
+        private static final int CAPACITY = 3;
+
+        // Access-ordered by account id, least recently used first
+        private final LinkedHashMap<String, DataManager> managers = new LinkedHashMap<>(8, 0.75f, true);
+
+        // loaded runs once the trades are in, if the manager had to be opened
+        DataManager acquire(Account account, Runnable loaded) {
+            DataManager manager = managers.get(account.getId());
+            if (manager == null) {
+                manager = open(account, loaded);
+                trim();
+            } else {
+                System.out.println("Switched to pooled account " + account.getName()
+                        + (manager.isTradesLoaded() ? "" : " (still loading)"));
+            }
+            return manager;
+        }
+
+        void prefetch(List<Account> accounts) {
+            for (Account account : accounts) {
+                if (managers.size() >= CAPACITY) {
+                    return;
+                }
+                if (!managers.containsKey(account.getId())) {
+                    System.out.println("Prefetching account " + account.getName());
+                    // The next one starts when this one is in, so they don't compete with each other
+                    open(account, () -> prefetch(accounts));
+                    return;
+                }
+            }
+        }
+
+        // Saves and forgets an account's manager, before its data is deleted or reloaded
+        void discard(Account account) {
+            DataManager manager = managers.remove(account.getId());
+            if (manager != null) {
+                manager.saveData();
+            }
+        }
+
+        void closeAll() {
+            for (DataManager manager : managers.values()) {
+                manager.saveData();
+            }
+            managers.clear();
+        }
+
+        // A pooled manager whose trades are in, without counting as a use of it
+        DataManager getLoaded(Account account) {
+            for (DataManager manager : managers.values()) {
+                if (manager.getAccount().getId().equals(account.getId()) && manager.isTradesLoaded()) {
+                    return manager;
+                }
+            }
+            return null;
+        }
+
+        private DataManager open(Account account, Runnable loaded) {
+            DataManager manager = new DataManager(accountManager, account);
+            managers.put(account.getId(), manager);
+            loadAccountTrades(manager, loaded);
+            return manager;
+        }
+
+        private void trim() {
+            Iterator<Map.Entry<String, DataManager>> it = managers.entrySet().iterator();
+            while (managers.size() > CAPACITY && it.hasNext()) {
+                DataManager eldest = it.next().getValue();
+                if (eldest != dataManager) {
+                    System.out.println("Releasing pooled account " + eldest.getAccount().getName());
+                    it.remove();
+                    eldest.saveData();
+                }
+            }
+        }
+    }
+
+    // Adding, importing and exporting need the whole history in the list
+    private boolean checkTradesLoaded() {
+        if (dataManager.isTradesLoaded()) {
+            return true;
+        }
+        showAlertHere("Loading", "Trades are still loading, please try again in a moment.");
+        return false;
+    }
+
+    private Label createPlaceholder(String text) {
+        Label placeholder = new Label(text);
+        placeholder.setStyle("-fx-text-fill: #cccccc;");
+        return placeholder;
     }
 private void showAlertHere(String title, String content) {
     Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -687,6 +1381,8 @@ accountSelector.setButtonCell(new ListCell<Account>() {
 
                 Optional<ButtonType> result = alert.showAndWait();
                 if (result.isPresent() && result.get() == ButtonType.OK) {
+                    // Its store must be closed before its folder is deleted
+                    dataManagers.discard(accountToRemove);
                     accountManager.removeAccount(accountToRemove);
                     accountSelector.setItems(FXCollections.observableArrayList(accountManager.getAccounts()));
                     accountSelector.setValue(accountManager.getCurrentAccount());
@@ -718,11 +1414,40 @@ root.setLeft(sidebar);
       BorderPane.setMargin(tableContainer, new Insets(0, 0, 0, 5));
 root.setCenter(tableContainer);
 
+        // Bottom section - Save status
+        root.setBottom(createStatusBar());
+
         mainScene = new Scene(root, 1200, 800);
         // Add CSS for styling
         mainScene.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
     }
 
+    private HBox createStatusBar() {
+        HBox statusBar = new HBox(10);
+        statusBar.setStyle("-fx-background-color: #2d2d2d;");
+        statusBar.setAlignment(Pos.CENTER_RIGHT);
+        statusBar.setPadding(new Insets(3, 10, 3, 10));
+
+        saveStatusLabel = new Label("All changes saved");
+        saveStatusLabel.setStyle("-fx-text-fill: #aaaaaa; -fx-font-size: 11px;");
+        statusBar.getChildren().add(saveStatusLabel);
+
+        persistenceQueue.setListener(() -> Platform.runLater(this::updateSaveStatus));
+        return statusBar;
+    }
+
+    private void updateSaveStatus() {
+        if (persistenceQueue.isSaving()) {
+            saveStatusLabel.setText("Saving... (" + persistenceQueue.getQueueDepth() + " queued)");
+            saveStatusLabel.setStyle("-fx-text-fill: #ffb74d; -fx-font-size: 11px;");
+        } else {
+            saveStatusLabel.setText(String.format("Saved - last flush %.1f ms, avg %.1f ms, max queue %d",
+                    persistenceQueue.getLastFlushMillis(), persistenceQueue.getAverageFlushMillis(),
+                    persistenceQueue.getMaxQueueDepth()));
+            saveStatusLabel.setStyle("-fx-text-fill: #aaaaaa; -fx-font-size: 11px;");
+        }
+    }
+
     private void showAddAccountDialog() {
           TextInputDialog dialog = new TextInputDialog();
     dialog.setTitle("Add Account");
@@ -782,12 +1507,14 @@ root.setCenter(tableContainer);
         searchBox.setPadding(new Insets(10));
         searchBox.setAlignment(Pos.CENTER_LEFT);
 
-        TextField searchField = new TextField();
-        searchField.setPromptText("Search trades...");
+        searchField = new TextField();
+        searchField.setPromptText("Search trades and notes...");
         searchField.setPrefWidth(250);
         searchField.setStyle("-fx-background-color: #3a3a3a; -fx-text-fill: white;");
+        searchField.setTooltip(new Tooltip("Words must all match; use \"quotes\" for a phrase and * for a prefix"));
 
         ComboBox<String> filterCombo = new ComboBox<>();
+        statusFilterCombo = filterCombo;
         filterCombo.getItems().addAll("All", "WIN", "LOSS");
         filterCombo.setValue("All");
         filterCombo.setStyle("-fx-base: #3a3a3a; -fx-control-inner-background: #3a3a3a; -fx-background-color: #3a3a3a; -fx-text-fill: white;");
@@ -806,13 +1533,15 @@ filterCombo.setButtonCell(new ListCell<String>() {
         Label filterLabel = new Label("Filter:");
         filterLabel.setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
 
-        // Add the search functionality as before
+        bindTradeTable();
+
+        // The box stays when the account changes, so it always searches the current one
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
-            // Search functionality code here (copy from original method)
+            dataManager.getTradeSearch().setQuery(newValue);
         });
 
         filterCombo.valueProperty().addListener((observable, oldValue, newValue) -> {
-            // Filter functionality code here (copy from original method)
+            dataManager.getTradeSearch().setStatusFilter(newValue);
         });
 
         searchBox.getChildren().addAll(searchLabel, searchField, filterLabel, filterCombo);
@@ -828,28 +1557,21 @@ filterCombo.setButtonCell(new ListCell<String>() {
 
     // In TradingJournalApp class, fix the switchAccount method:
 private void switchAccount(Account account) {
-    // Save current account data before switching
-    if (dataManager != null) {
-        dataManager.saveData();
-    }
-    
+    long start = System.nanoTime();
     // Update current account in account manager
     accountManager.setCurrentAccount(account);
+    accountManager.markUsed(account);
     
-    // Create new data manager for selected account
-    dataManager = new DataManager(accountManager);
-    filteredTrades = new FilteredList<>(dataManager.getTrades(), p -> true);
+    // The previous account stays loaded in the pool; this one is taken from it or starts loading
+    dataManager = dataManagers.acquire(account, () -> { });
     
     // Update UI
     root.setLeft(createSidebar());
-    
-    // Update the table
-    tradeTable = createTradeTable();
-    VBox tableContainer = createTradeTableContainer(tradeTable);
-    root.setCenter(tableContainer);
+    bindTradeTable();
     
     // Update window title
     primaryStage.setTitle("Trading Journal - " + accountManager.getCurrentAccount().getName());
+    System.out.println("Switched account in " + (System.nanoTime() - start) / 1_000_000 + " ms");
     
     // Force UI refresh
     Platform.runLater(() -> {
@@ -968,6 +1690,8 @@ private void showManageAccountsDialog() {
                 Optional<ButtonType> result = confirmAlert.showAndWait();
                 if (result.isPresent() && result.get() == ButtonType.OK) {
                     Account currentAccount = accountManager.getCurrentAccount();
+                    // Its store must be closed before its folder is deleted
+                    dataManagers.discard(selectedAccount);
                     accountManager.removeAccount(selectedAccount);
                     
                     // Update selector in main UI if needed
@@ -1090,6 +1814,20 @@ settingsMenu.getItems().addAll(accountItem, symbolsItem, setupsItem, new Separat
         rulesArea.setStyle("-fx-control-inner-background: #3a3a3a; -fx-text-fill: #cccccc;");
         rulesArea.setPrefHeight(150);
 
+        Label challengeLabel = new Label("Challenge Rules");
+        challengeLabel.setStyle("-fx-text-fill: white; -fx-font-weight: bold; -fx-padding: 10 0 0 0;");
+
+        // Refreshed from the rule monitor's running totals whenever the trades change
+        ruleStatusBox = new VBox(5);
+        // The monitor hands the listener on if a mapped load replaces it
+        DataManager manager = dataManager;
+        manager.getRuleMonitor().setListener(() -> {
+            if (dataManager == manager) {
+                updateRuleStatus();
+            }
+        });
+        updateRuleStatus();
+
         Button addTradeBtn = new Button("Add Trade");
         addTradeBtn.setMaxWidth(Double.MAX_VALUE);
         addTradeBtn.setStyle("-fx-background-color: #0078d7; -fx-text-fill: white;");
@@ -1105,12 +1843,49 @@ settingsMenu.getItems().addAll(accountItem, symbolsItem, setupsItem, new Separat
         calendarBtn.setStyle("-fx-background-color: #333333; -fx-text-fill: white;");
         calendarBtn.setOnAction(e -> showCalendarView());
 
-        sidebar.getChildren().addAll(accountLabel, accountInfo, rulesLabel, rulesArea,
-                new Separator(), addTradeBtn, dashboardBtn, calendarBtn);
+        Button portfolioBtn = new Button("All Accounts");
+        portfolioBtn.setMaxWidth(Double.MAX_VALUE);
+        portfolioBtn.setStyle("-fx-background-color: #333333; -fx-text-fill: white;");
+        portfolioBtn.setOnAction(e -> showPortfolioView());
+
+        sidebar.getChildren().addAll(accountLabel, accountInfo, rulesLabel, rulesArea, challengeLabel, ruleStatusBox,
+                new Separator(), addTradeBtn, dashboardBtn, calendarBtn, portfolioBtn);
 
         return sidebar;
     }
 
+    private void updateRuleStatus() {
+        RuleMonitor monitor = dataManager.getRuleMonitor();
+        ruleStatusBox.getChildren().clear();
+        if (!RuleMonitor.hasRules(dataManager.getSettings())) {
+            Label noneLabel = new Label("No limits set (Settings > Account Settings)");
+            noneLabel.setWrapText(true);
+            noneLabel.setStyle("-fx-text-fill: #9e9e9e;");
+            ruleStatusBox.getChildren().add(noneLabel);
+        }
+        for (RuleMonitor.Check check : monitor.evaluate()) {
+            Label checkLabel = new Label(check.getName() + ": " + check.getDetail());
+            checkLabel.setWrapText(true);
+            switch (check.getState()) {
+                case BREACHED:
+                    checkLabel.setStyle("-fx-text-fill: #f44336; -fx-font-weight: bold;");
+                    break;
+                case PENDING:
+                    checkLabel.setStyle("-fx-text-fill: #ffb74d;");
+                    break;
+                default:
+                    checkLabel.setStyle("-fx-text-fill: #4caf50;");
+                    break;
+            }
+            ruleStatusBox.getChildren().add(checkLabel);
+        }
+        // A new breach can flag trades that were already shown, so repaint the rows
+        if (tradeTable != null && monitor.getFlagVersion() != shownFlagVersion) {
+            shownFlagVersion = monitor.getFlagVersion();
+            tradeTable.refresh();
+        }
+    }
+
     private TableView<Trade> createTradeTable() {
         TableView<Trade> table = new TableView<>(filteredTrades);
         table.setStyle("-fx-background-color: #2d2d2d; -fx-control-inner-background: #3a3a3a;");
@@ -1278,91 +2053,26 @@ actionsCol.setResizable(true); // Allow users to resize if needed
    table.getColumns().addAll(statusCol, dateCol, durationCol, symbolCol, entryCol, 
                         exitCol, sizeCol, sideCol, returnsCol, balanceCol, 
                         setupCol, entryTypeCol, actionsCol);
-        // Add search functionality
-        HBox searchBox = new HBox(10);
-        searchBox.setPadding(new Insets(5));
-        searchBox.setAlignment(Pos.CENTER_LEFT);
 
-        TextField searchField = new TextField();
-        searchField.setPromptText("Search trades...");
-        searchField.setPrefWidth(250);
-        searchField.setStyle("-fx-background-color: #3a3a3a; -fx-text-fill: white;");
-
-        ComboBox<String> filterCombo = new ComboBox<>();
-        filterCombo.getItems().addAll("All", "WIN", "LOSS");
-        filterCombo.setValue("All");
-        filterCombo.setStyle("-fx-background-color: #3a3a3a; -fx-text-fill: white;");
-        filterCombo.setCellFactory(lv -> new ListCell<String>() {
+        // Trades that broke a challenge rule get a red edge, which leaves the selection colour alone
+        table.setRowFactory(tv -> new TableRow<Trade>() {
             @Override
-            protected void updateItem(String item, boolean empty) {
+            protected void updateItem(Trade item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty || item == null) {
-                    setText(null);
+                if (item != null && !empty && dataManager.getRuleMonitor().isFlagged(item)) {
+                    setStyle("-fx-border-color: transparent transparent transparent #f44336; -fx-border-width: 0 0 0 4;");
                 } else {
-                    setText(item);
-                    setStyle("-fx-text-fill: #e0e0e0;");
+                    setStyle("");
                 }
             }
         });
-        searchField.textProperty().addListener((observable, oldValue, newValue) -> {
-            filteredTrades.setPredicate(trade -> {
-                // If filter text is empty, display all trades
-                if (newValue == null || newValue.isEmpty()) {
-                    return applyStatusFilter(trade, filterCombo.getValue());
-                }
-
-                String lowerCaseFilter = newValue.toLowerCase();
-
-                if (trade.getSymbol().toLowerCase().contains(lowerCaseFilter)) {
-                    return applyStatusFilter(trade, filterCombo.getValue());
-                } else if (trade.getSetup().toLowerCase().contains(lowerCaseFilter)) {
-                    return applyStatusFilter(trade, filterCombo.getValue());
-                } else if (trade.getEntryType().toLowerCase().contains(lowerCaseFilter)) {
-                    return applyStatusFilter(trade, filterCombo.getValue());
-                }
-                return false;
-            });
-        });
-
-        filterCombo.valueProperty().addListener((observable, oldValue, newValue) -> {
-            filteredTrades.setPredicate(trade -> {
-                // Apply text filter
-                String searchText = searchField.getText();
-                if (searchText == null || searchText.isEmpty()) {
-                    return applyStatusFilter(trade, newValue);
-                }
-
-                String lowerCaseFilter = searchText.toLowerCase();
-
-                if (trade.getSymbol().toLowerCase().contains(lowerCaseFilter)) {
-                    return applyStatusFilter(trade, newValue);
-                } else if (trade.getSetup().toLowerCase().contains(lowerCaseFilter)) {
-                    return applyStatusFilter(trade, newValue);
-                } else if (trade.getEntryType().toLowerCase().contains(lowerCaseFilter)) {
-                    return applyStatusFilter(trade, newValue);
-                }
-                return false;
-            });
-        });
-
-        searchBox.getChildren().addAll(new Label("Search: "), searchField,
-                new Label("Filter: "), filterCombo);
-
-        VBox tableContainer = new VBox();
-        tableContainer.getChildren().addAll(searchBox, table);
-        VBox.setVgrow(table, Priority.ALWAYS);
-
         return table;
     }
 
-    private boolean applyStatusFilter(Trade trade, String filter) {
-        if ("All".equals(filter)) {
-            return true;
-        }
-        return trade.getStatus().equals(filter);
-    }
-
     private void showAddTradeDialog() {
+        if (!checkTradesLoaded()) {
+            return;
+        }
         Stage dialog = new Stage();
         dialog.initModality(Modality.APPLICATION_MODAL);
         dialog.initOwner(primaryStage);
@@ -1602,7 +2312,7 @@ grid.add(balanceField, 1, 12);
         overviewGrid.setStyle("-fx-background-color: #2d2d2d;");
 
         // Trade info in overview
-        addLabelValue(overviewGrid, 0, "Status:", trade.getStatus(), trade.getStatus().equals("WIN") ? "#4caf50" : "#f44336");
+        addLabelValue(overviewGrid, 0, "Status:", trade.getStatus(), trade.isWin() ? "#4caf50" : "#f44336");
         addLabelValue(overviewGrid, 1, "Date:", trade.getDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")), null);
         addLabelValue(overviewGrid, 2, "Symbol:", trade.getSymbol(), null);
         addLabelValue(overviewGrid, 3, "Side:", trade.getSide(), null);
@@ -1657,10 +2367,10 @@ grid.add(balanceField, 1, 12);
         if (trade.getImages() != null && !trade.getImages().isEmpty()) {
             for (String imagePath : trade.getImages()) {
                 try {
-                    Image image = new Image(new File(imagePath).toURI().toString());
-                    ImageView imageView = new ImageView(image);
+                    ImageView imageView = new ImageView();
                     imageView.setFitWidth(500);
                     imageView.setPreserveRatio(true);
+                    dataManager.getThumbnails().loadInto(imageView, imagePath, 500);
 
                     VBox imageBox = new VBox(5);
                     Button deleteBtn = new Button("Delete Image");
@@ -1697,10 +2407,10 @@ grid.add(balanceField, 1, 12);
                     dataManager.updateTrade(trade);
 
                     // Add new image to display
-                    Image image = new Image(new File(savedPath).toURI().toString());
-                    ImageView imageView = new ImageView(image);
+                    ImageView imageView = new ImageView();
                     imageView.setFitWidth(500);
                     imageView.setPreserveRatio(true);
+                    dataManager.getThumbnails().loadInto(imageView, savedPath, 500);
 
                     VBox imageBox = new VBox(5);
                     Button deleteBtn = new Button("Delete Image");
@@ -2013,6 +2723,29 @@ grid.add(returnsField, 1, 9);
         rulesArea.setPrefRowCount(5);
         rulesArea.setStyle("-fx-control-inner-background: #3a3a3a; -fx-text-fill: white;");
 
+        // Challenge rules, blank or 0 to turn one off
+        JournalSettings current = dataManager.getSettings();
+        Label dailyLossLabel = new Label("Max Daily Loss (%):");
+        dailyLossLabel.setStyle("-fx-text-fill: white;");
+        TextField dailyLossField = createLimitField(current.getMaxDailyLoss());
+        Label drawdownLabel = new Label("Max Day-Close Drawdown (%):");
+        drawdownLabel.setStyle("-fx-text-fill: white;");
+        TextField drawdownField = createLimitField(current.getMaxDrawdown());
+        Label targetLabel = new Label("Profit Target (%):");
+        targetLabel.setStyle("-fx-text-fill: white;");
+        TextField targetField = createLimitField(current.getProfitTarget());
+        Label tradingDaysLabel = new Label("Min Trading Days:");
+        tradingDaysLabel.setStyle("-fx-text-fill: white;");
+        TextField tradingDaysField = createLimitField(current.getMinTradingDays());
+        Label riskMultipleLabel = new Label("Max Loss per Trade (x Avg Risk):");
+        riskMultipleLabel.setStyle("-fx-text-fill: white;");
+        TextField riskMultipleField = createLimitField(current.getMaxRiskMultiple());
+
+        // Storage engine
+        CheckBox mappedStorageBox = new CheckBox("Memory-mapped trade storage (for very large accounts)");
+        mappedStorageBox.setSelected(dataManager.getSettings().isUseMappedStorage());
+        mappedStorageBox.setStyle("-fx-text-fill: white;");
+
         // Add to grid
         grid.add(balanceLabel, 0, 0);
         grid.add(balanceField, 1, 0);
@@ -2020,6 +2753,17 @@ grid.add(returnsField, 1, 9);
         grid.add(riskField, 1, 1);
         grid.add(rulesLabel, 0, 2);
         grid.add(rulesArea, 1, 2);
+        grid.add(dailyLossLabel, 0, 3);
+        grid.add(dailyLossField, 1, 3);
+        grid.add(drawdownLabel, 0, 4);
+        grid.add(drawdownField, 1, 4);
+        grid.add(targetLabel, 0, 5);
+        grid.add(targetField, 1, 5);
+        grid.add(tradingDaysLabel, 0, 6);
+        grid.add(tradingDaysField, 1, 6);
+        grid.add(riskMultipleLabel, 0, 7);
+        grid.add(riskMultipleField, 1, 7);
+        grid.add(mappedStorageBox, 1, 8);
 
         // Buttons
         Button saveButton = new Button("Save");
@@ -2031,34 +2775,73 @@ grid.add(returnsField, 1, 9);
         buttonBox.setAlignment(Pos.CENTER_RIGHT);
         buttonBox.getChildren().addAll(cancelButton, saveButton);
 
-        grid.add(buttonBox, 1, 3);
+        grid.add(buttonBox, 1, 9);
 
         // Handle events
         saveButton.setOnAction(e -> {
             try {
                 double balance = Double.parseDouble(balanceField.getText());
                 double risk = Double.parseDouble(riskField.getText());
+                double maxDailyLoss = parseLimit(dailyLossField);
+                double maxDrawdown = parseLimit(drawdownField);
+                double profitTarget = parseLimit(targetField);
+                int minTradingDays = (int) parseLimit(tradingDaysField);
+                double maxRiskMultiple = parseLimit(riskMultipleField);
+                boolean storageChanged = mappedStorageBox.isSelected() != dataManager.getSettings().isUseMappedStorage();
 
                 dataManager.getSettings().setAccountBalance(balance);
                 dataManager.getSettings().setAverageRisk(risk);
                 dataManager.getSettings().setTradingRules(rulesArea.getText());
+                dataManager.getSettings().setUseMappedStorage(mappedStorageBox.isSelected());
+                dataManager.getSettings().setMaxDailyLoss(maxDailyLoss);
+                dataManager.getSettings().setMaxDrawdown(maxDrawdown);
+                dataManager.getSettings().setProfitTarget(profitTarget);
+                dataManager.getSettings().setMinTradingDays(minTradingDays);
+                dataManager.getSettings().setMaxRiskMultiple(maxRiskMultiple);
 
                 dataManager.updateSettings();
                 dialog.close();
 
-                // Refresh sidebar to show updated values
-                root.setLeft(createSidebar());
+                if (storageChanged) {
+                    // Reloading the account migrates its trades to the selected engine
+                    dataManagers.discard(accountManager.getCurrentAccount());
+                    switchAccount(accountManager.getCurrentAccount());
+                } else {
+                    // Refresh sidebar to show updated values
+                    root.setLeft(createSidebar());
+                }
             } catch (NumberFormatException ex) {
-                showAlertHere("Error", "Please enter valid numbers for Balance and Risk fields.");
+                showAlertHere("Error", "Please enter valid numbers for Balance, Risk and the rule limits.");
             }
         });
 
         cancelButton.setOnAction(e -> dialog.close());
 
-        Scene scene = new Scene(grid, 500, 300);
+        Scene scene = new Scene(grid, 560, 520);
         dialog.setScene(scene);
         dialog.showAndWait();
     }
+
+    private TextField createLimitField(double value) {
+        String text = value % 1 == 0 ? String.valueOf((long) value) : String.valueOf(value);
+        TextField field = new TextField(value > 0 ? text : "");
+        field.setPromptText("Off");
+        field.setStyle("-fx-background-color: #3a3a3a; -fx-text-fill: white;");
+        return field;
+    }
+
+    // Blank means the rule is off; negative limits make no sense, so they are refused like other bad input
+    private double parseLimit(TextField field) {
+        String text = field.getText().trim();
+        if (text.isEmpty()) {
+            return 0;
+        }
+        double value = Double.parseDouble(text);
+        if (value < 0 || Double.isNaN(value)) {
+            throw new NumberFormatException("Negative limit: " + text);
+        }
+        return value;
+    }
 private <T extends SetupEntryDetails> VBox createEnhancedListManagerBox(
         String title, 
         List<T> items, 
@@ -2099,6 +2882,7 @@ private <T extends SetupEntryDetails> VBox createEnhancedListManagerBox(
         if (!newItem.isEmpty() && items.stream().noneMatch(item -> item.getName().equals(newItem))) {
             T newDetail = (T) new SetupEntryDetails(newItem);
             items.add(newDetail);
+            dataManager.indexItemNotes(newDetail, isSetup ? NotesIndex.Kind.SETUP : NotesIndex.Kind.ENTRY_TYPE);
             newItemField.clear();
             
             // Refresh the list
@@ -2157,6 +2941,7 @@ removeButton.setOnAction(e -> {
     Optional<ButtonType> result = confirmAlert.showAndWait();
     if (result.isPresent() && result.get() == ButtonType.OK) {
         items.remove(item);
+        dataManager.unindexItemNotes(item);
         refreshItemsList(listBox, items, isSetup);
         
         // Save the changes by calling updateSettings
@@ -2190,6 +2975,8 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
     saveNotesBtn.setOnAction(e -> {
         item.setNotes(notesArea.getText());
         dataManager.updateSettings();
+        dataManager.indexItemNotes(item, "Setup".equals(itemType) ? NotesIndex.Kind.SETUP : NotesIndex.Kind.ENTRY_TYPE);
+        dataManager.getTradeSearch().refresh();
         showAlertHere("Success", "Notes saved successfully.");
     });
     
@@ -2215,10 +3002,10 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
     if (item.getImages() != null && !item.getImages().isEmpty()) {
         for (String imagePath : item.getImages()) {
             try {
-                Image image = new Image(new File(imagePath).toURI().toString());
-                ImageView imageView = new ImageView(image);
+                ImageView imageView = new ImageView();
                 imageView.setFitWidth(400);
                 imageView.setPreserveRatio(true);
+                dataManager.getThumbnails().loadInto(imageView, imagePath, 400);
                 
                 VBox imageBox = new VBox(5);
                 Button deleteBtn = new Button("Delete Image");
@@ -2255,10 +3042,10 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
                 dataManager.updateSettings();
                 
                 // Add new image to display
-                Image image = new Image(new File(savedPath).toURI().toString());
-                ImageView imageView = new ImageView(image);
+                ImageView imageView = new ImageView();
                 imageView.setFitWidth(400);
                 imageView.setPreserveRatio(true);
+                dataManager.getThumbnails().loadInto(imageView, savedPath, 400);
                 
                 VBox imageBox = new VBox(5);
                 Button deleteBtn = new Button("Delete Image");
@@ -2496,34 +3283,181 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         dialog.showAndWait();
     }
 
-    private VBox createOverviewTab() {
+    private void showPortfolioView() {
+        // Accounts whose trades are loaded in the pool are copied here; the rest are read from disk, read-only
+        List<Portfolio.Source> sources = new ArrayList<>();
+        for (Account account : accountManager.getAccounts()) {
+            File directory = new File(DataManager.DATA_DIR, account.getId());
+            DataManager manager = dataManagers.getLoaded(account);
+            if (manager != null && manager.isTradesLoaded()) {
+                sources.add(new Portfolio.Source(account, directory, manager.snapshotTrades(), manager.getSettings()));
+            } else {
+                sources.add(new Portfolio.Source(account, directory, null, null));
+            }
+        }
+
+        Portfolio task = new Portfolio(sources);
+        Stage progressDialog = createProgressDialog(task, "Loading All Accounts");
+
+        task.setOnSucceeded(e -> {
+            progressDialog.close();
+            showPortfolioSummary(task.getValue());
+        });
+        task.setOnCancelled(e -> progressDialog.close());
+        task.setOnFailed(e -> {
+            progressDialog.close();
+            Throwable error = task.getException();
+            showAlertHere("Portfolio Error", "Failed to load the accounts: " + error.getMessage());
+            error.printStackTrace();
+        });
+
+        Thread thread = new Thread(task, "portfolio");
+        thread.setDaemon(true);
+        thread.start();
+        progressDialog.show();
+    }
+
+    private void showPortfolioSummary(Portfolio.Summary summary) {
+        Stage dialog = new Stage();
+        dialog.initModality(Modality.APPLICATION_MODAL);
+        dialog.initOwner(primaryStage);
+        dialog.setTitle("All Accounts");
+
         VBox mainBox = new VBox(20);
         mainBox.setPadding(new Insets(20));
         mainBox.setStyle("-fx-background-color: #2d2d2d;");
 
-        // Calculate statistics
-        int totalTrades = dataManager.getTrades().size();
-        long winningTrades = dataManager.getTrades().stream()
-                .filter(t -> t.getStatus().equals("WIN"))
-                .count();
-        long losingTrades = totalTrades - winningTrades;
-        double winRate = totalTrades > 0 ? (double) winningTrades / totalTrades * 100 : 0;
+        int days = summary.getDays();
+        double endingEquity = days > 0 ? summary.getEquity(days - 1) : summary.getStartingBalance();
 
-        double totalProfit = dataManager.getTrades().stream()
-                .mapToDouble(Trade::getReturns)
-                .sum();
+        GridPane statsGrid = new GridPane();
+        statsGrid.setHgap(20);
+        statsGrid.setVgap(10);
+        statsGrid.setPadding(new Insets(10));
+        statsGrid.setStyle("-fx-background-color: #333333; -fx-background-radius: 5;");
 
-        double avgWin = dataManager.getTrades().stream()
-                .filter(t -> t.getStatus().equals("WIN"))
-                .mapToDouble(Trade::getReturns)
-                .average()
-                .orElse(0);
+        addStatsLabel(statsGrid, 0, 0, "Accounts", String.valueOf(summary.getAccounts().size()));
+        addStatsLabel(statsGrid, 0, 1, "Total Trades", String.valueOf(summary.getTrades()));
+        addStatsLabel(statsGrid, 1, 0, "Win Rate", String.format("%.2f%%", summary.getWinRate()));
+        addStatsLabel(statsGrid, 1, 1, "Total P&L", String.format("$%.2f", summary.getNetReturns()));
+        addStatsLabel(statsGrid, 2, 0, "Starting Balance", String.format("$%.2f", summary.getStartingBalance()));
+        addStatsLabel(statsGrid, 2, 1, "Current Equity", String.format("$%.2f", endingEquity));
+        addStatsLabel(statsGrid, 3, 0, "Max Drawdown", String.format("$%.2f", summary.getMaxDrawdown()));
+        addStatsLabel(statsGrid, 3, 1, "Aggregated In", summary.getElapsedMillis() + " ms");
+
+        // Same date axis as the account chart; without a period set its zoom handlers stay idle
+        LineChart<Number, Number> equityChart = createProfitLossChart();
+        equityChart.setTitle("Combined Equity");
+        equityChart.getYAxis().setLabel("Equity ($)");
+        ((NumberAxis) equityChart.getYAxis()).setForceZeroInRange(false);
+        equityChart.setPrefHeight(300);
+        if (days > 0) {
+            int[] points = Downsampler.lttb(days, i -> summary.getEpochDay(i), i -> summary.getEquity(i),
+                    DEFAULT_CHART_POINTS);
+            XYChart.Series<Number, Number> series = new XYChart.Series<>();
+            series.setName("Equity");
+            List<XYChart.Data<Number, Number>> data = new ArrayList<>(points.length);
+            for (int point : points) {
+                data.add(new XYChart.Data<>(summary.getEpochDay(point), summary.getEquity(point)));
+            }
+            series.getData().setAll(data);
+            equityChart.getData().add(series);
+        }
 
-        double avgLoss = dataManager.getTrades().stream()
-                .filter(t -> t.getStatus().equals("LOSS"))
-                .mapToDouble(Trade::getReturns)
-                .average()
-                .orElse(0);
+        Label accountsLabel = new Label("Accounts");
+        accountsLabel.setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
+        TableView<Portfolio.AccountSummary> accountsTable = new TableView<>(FXCollections.observableArrayList(summary.getAccounts()));
+        accountsTable.setStyle("-fx-background-color: #2d2d2d; -fx-control-inner-background: #3a3a3a;");
+        accountsTable.setPrefHeight(150);
+        accountsTable.setPlaceholder(createPlaceholder("No accounts"));
+        TableColumn<Portfolio.AccountSummary, String> nameCol = new TableColumn<>("ACCOUNT");
+        nameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
+        TableColumn<Portfolio.AccountSummary, Integer> accountTradesCol = new TableColumn<>("TRADES");
+        accountTradesCol.setCellValueFactory(new PropertyValueFactory<>("trades"));
+        TableColumn<Portfolio.AccountSummary, Double> winRateCol = new TableColumn<>("WIN RATE");
+        winRateCol.setCellValueFactory(new PropertyValueFactory<>("winRate"));
+        winRateCol.setCellFactory(column -> createAmountCell("%.2f%%", false));
+        TableColumn<Portfolio.AccountSummary, Double> accountReturnsCol = new TableColumn<>("P&L");
+        accountReturnsCol.setCellValueFactory(new PropertyValueFactory<>("netReturns"));
+        accountReturnsCol.setCellFactory(column -> createAmountCell("$%.2f", true));
+        TableColumn<Portfolio.AccountSummary, String> errorCol = new TableColumn<>("ERROR");
+        errorCol.setCellValueFactory(new PropertyValueFactory<>("error"));
+        errorCol.setPrefWidth(250);
+        accountsTable.getColumns().addAll(List.of(nameCol, accountTradesCol, winRateCol, accountReturnsCol, errorCol));
+
+        Label symbolsLabel = new Label("Exposure by Symbol");
+        symbolsLabel.setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
+        TableView<Portfolio.SymbolExposure> symbolsTable = new TableView<>(FXCollections.observableArrayList(summary.getSymbols()));
+        symbolsTable.setStyle("-fx-background-color: #2d2d2d; -fx-control-inner-background: #3a3a3a;");
+        symbolsTable.setPrefHeight(200);
+        symbolsTable.setPlaceholder(createPlaceholder("No trades"));
+        TableColumn<Portfolio.SymbolExposure, String> symbolCol = new TableColumn<>("SYMBOL");
+        symbolCol.setCellValueFactory(new PropertyValueFactory<>("symbol"));
+        TableColumn<Portfolio.SymbolExposure, Integer> symbolTradesCol = new TableColumn<>("TRADES");
+        symbolTradesCol.setCellValueFactory(new PropertyValueFactory<>("trades"));
+        TableColumn<Portfolio.SymbolExposure, Integer> longCol = new TableColumn<>("LONG");
+        longCol.setCellValueFactory(new PropertyValueFactory<>("longTrades"));
+        TableColumn<Portfolio.SymbolExposure, Integer> shortCol = new TableColumn<>("SHORT");
+        shortCol.setCellValueFactory(new PropertyValueFactory<>("shortTrades"));
+        TableColumn<Portfolio.SymbolExposure, Double> volumeCol = new TableColumn<>("VOLUME");
+        volumeCol.setCellValueFactory(new PropertyValueFactory<>("volume"));
+        volumeCol.setCellFactory(column -> createAmountCell("%.2f", false));
+        TableColumn<Portfolio.SymbolExposure, Double> notionalCol = new TableColumn<>("NOTIONAL");
+        notionalCol.setCellValueFactory(new PropertyValueFactory<>("notional"));
+        notionalCol.setCellFactory(column -> createAmountCell("%.2f", false));
+        TableColumn<Portfolio.SymbolExposure, Double> symbolReturnsCol = new TableColumn<>("P&L");
+        symbolReturnsCol.setCellValueFactory(new PropertyValueFactory<>("netReturns"));
+        symbolReturnsCol.setCellFactory(column -> createAmountCell("$%.2f", true));
+        symbolsTable.getColumns().addAll(List.of(symbolCol, symbolTradesCol, longCol, shortCol, volumeCol,
+                notionalCol, symbolReturnsCol));
+
+        mainBox.getChildren().addAll(statsGrid, equityChart, accountsLabel, accountsTable, symbolsLabel, symbolsTable);
+
+        ScrollPane scrollPane = new ScrollPane(mainBox);
+        scrollPane.setFitToWidth(true);
+        scrollPane.setStyle("-fx-background: #2d2d2d; -fx-background-color: #2d2d2d;");
+        dialog.setScene(new Scene(scrollPane, 900, 700));
+        dialog.show();
+    }
+
+    // Formatted number cell, green or red by sign when colored
+    private <S> TableCell<S, Double> createAmountCell(String format, boolean colored) {
+        return new TableCell<S, Double>() {
+            @Override
+            protected void updateItem(Double item, boolean empty) {
+                super.updateItem(item, empty);
+                if (item == null || empty) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(String.format(format, item));
+                    if (!colored) {
+                        setStyle("-fx-text-fill: white;");
+                    } else if (item >= 0) {
+                        setStyle("-fx-text-fill: #4caf50;");
+                    } else {
+                        setStyle("-fx-text-fill: #f44336;");
+                    }
+                }
+            }
+        };
+    }
+
+    private VBox createOverviewTab() {
+        VBox mainBox = new VBox(20);
+        mainBox.setPadding(new Insets(20));
+        mainBox.setStyle("-fx-background-color: #2d2d2d;");
+
+        // Statistics are maintained incrementally by the data manager
+        TradeStatistics stats = dataManager.getStatistics();
+        int totalTrades = stats.getTotalTrades();
+        int winningTrades = stats.getWinningTrades();
+        int losingTrades = stats.getNonWinningTrades();
+        double winRate = stats.getWinRate();
+        double totalProfit = stats.getTotalProfit();
+        double avgWin = stats.getAverageWin();
+        double avgLoss = stats.getAverageLoss();
+        double riskReward = stats.getRiskRewardRatio();
 
         // Create statistics grid
         GridPane statsGrid = new GridPane();
@@ -2540,7 +3474,19 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         addStatsLabel(statsGrid, 1, 2, "Avg Win", String.format("$%.2f", avgWin));
         addStatsLabel(statsGrid, 2, 0, "Avg Loss", String.format("$%.2f", avgLoss));
         addStatsLabel(statsGrid, 2, 1, "Risk-Reward Ratio",
-                avgWin != 0 && avgLoss != 0 ? String.format("%.2f", Math.abs(avgWin / avgLoss)) : "N/A");
+                !Double.isNaN(riskReward) ? String.format("%.2f", riskReward) : "N/A");
+
+        // Drawdown figures come from the equity curve, seeded with the account balance
+        EquityCurve equityCurve = dataManager.getEquityCurve();
+        double recoveryFactor = equityCurve.getRecoveryFactor();
+        addStatsLabel(statsGrid, 2, 2, "Max Drawdown",
+                String.format("$%.2f (%.2f%%)", equityCurve.getMaxDrawdown(), equityCurve.getMaxDrawdownPercent()));
+        addStatsLabel(statsGrid, 3, 0, "Current Drawdown",
+                String.format("$%.2f (%.2f%%)", equityCurve.getCurrentDrawdown(), equityCurve.getCurrentDrawdownPercent()));
+        addStatsLabel(statsGrid, 3, 1, "Longest Underwater",
+                equityCurve.getLongestUnderwaterDays() + " days (now " + equityCurve.getCurrentUnderwaterDays() + ")");
+        addStatsLabel(statsGrid, 3, 2, "Recovery Factor",
+                !Double.isNaN(recoveryFactor) ? String.format("%.2f", recoveryFactor) : "N/A");
 
         // Create performance by setup chart
         PieChart setupPieChart = createSetupPieChart();
@@ -2549,19 +3495,47 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         VBox bestWorstBox = new VBox(10);
         bestWorstBox.setStyle("-fx-background-color: #333333; -fx-background-radius: 5; -fx-padding: 10;");
 
+        HBox rankingBox = new HBox(10);
+        rankingBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label rankByLabel = new Label("Rank by:");
+        rankByLabel.setStyle("-fx-text-fill: white;");
+        TopTrades topTrades = dataManager.getTopTrades();
+        ComboBox<TopTrades.Ranking> rankingCombo = new ComboBox<>(FXCollections.observableArrayList(TopTrades.Ranking.values()));
+        rankingCombo.setValue(topTrades.getRanking());
+        rankingCombo.setStyle("-fx-background-color: #3a3a3a; -fx-text-fill: white;");
+
+        Label showLabel = new Label("Show:");
+        showLabel.setStyle("-fx-text-fill: white;");
+        Spinner<Integer> countSpinner = new Spinner<>(1, 50, 5);
+        countSpinner.setPrefWidth(70);
+
+        rankingBox.getChildren().addAll(rankByLabel, rankingCombo, showLabel, countSpinner);
+
         Label bestTradesLabel = new Label("Best Trades");
         bestTradesLabel.setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
 
-        TableView<Trade> bestTradesTable = createTopTradesTable(true);
+        TableView<Trade> bestTradesTable = createTopTradesTable();
         bestTradesTable.setPrefHeight(150);
 
         Label worstTradesLabel = new Label("Worst Trades");
         worstTradesLabel.setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
 
-        TableView<Trade> worstTradesTable = createTopTradesTable(false);
+        TableView<Trade> worstTradesTable = createTopTradesTable();
         worstTradesTable.setPrefHeight(150);
 
-        bestWorstBox.getChildren().addAll(bestTradesLabel, bestTradesTable, worstTradesLabel, worstTradesTable);
+        // Both tables read straight from the ranked index, no sorting here
+        Runnable refreshTopTrades = () -> {
+            topTrades.setRanking(rankingCombo.getValue());
+            int count = countSpinner.getValue();
+            bestTradesTable.getItems().setAll(topTrades.best(count));
+            worstTradesTable.getItems().setAll(topTrades.worst(count));
+        };
+        rankingCombo.setOnAction(e -> refreshTopTrades.run());
+        countSpinner.valueProperty().addListener((obs, oldVal, newVal) -> refreshTopTrades.run());
+        refreshTopTrades.run();
+
+        bestWorstBox.getChildren().addAll(rankingBox, bestTradesLabel, bestTradesTable, worstTradesLabel, worstTradesTable);
 
         mainBox.getChildren().addAll(statsGrid, setupPieChart, bestWorstBox);
 
@@ -2604,21 +3578,9 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         return chart;
     }
 
-    private TableView<Trade> createTopTradesTable(boolean best) {
-        // Sort trades by returns (ascending or descending based on best flag)
-        List<Trade> sortedTrades = new ArrayList<>(dataManager.getTrades());
-        sortedTrades.sort((t1, t2) -> best
-                ? Double.compare(t2.getReturns(), t1.getReturns())
-                : Double.compare(t1.getReturns(), t2.getReturns()));
-
-        // Take top 5 or less
-        List<Trade> topTrades = sortedTrades.stream()
-                .limit(5)
-                .collect(Collectors.toList());
-
-        // Create table
+    private TableView<Trade> createTopTradesTable() {
+        // Create table, rows are filled from the top trades index
         TableView<Trade> table = new TableView<>();
-        table.setItems(FXCollections.observableArrayList(topTrades));
         table.setStyle("-fx-background-color: #2d2d2d; -fx-control-inner-background: #3a3a3a;");
 
         // Create columns
@@ -2684,7 +3646,28 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
             }
         });
 
-        table.getColumns().addAll(symbolCol, dateCol, setupCol, returnsCol, returnPctCol);
+        TableColumn<Trade, Double> rMultipleCol = new TableColumn<>("R");
+        rMultipleCol.setCellValueFactory(data ->
+                new SimpleObjectProperty<>(TopTrades.rMultiple(data.getValue(), dataManager.getSettings())));
+        rMultipleCol.setCellFactory(column -> new TableCell<Trade, Double>() {
+            @Override
+            protected void updateItem(Double item, boolean empty) {
+                super.updateItem(item, empty);
+                if (item == null || empty) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(String.format("%.2fR", item));
+                    if (item > 0) {
+                        setStyle("-fx-text-fill: #4caf50;");
+                    } else {
+                        setStyle("-fx-text-fill: #f44336;");
+                    }
+                }
+            }
+        });
+
+        table.getColumns().addAll(symbolCol, dateCol, setupCol, returnsCol, returnPctCol, rMultipleCol);
 
         return table;
     }
@@ -2702,20 +3685,35 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         periodLabel.setStyle("-fx-text-fill: white;");
 
         ComboBox<String> periodCombo = new ComboBox<>();
-        periodCombo.getItems().addAll("All Time", "This Month", "This Week", "Last 30 Days");
+        periodCombo.getItems().addAll("All Time", "This Month", "This Week", "Last 30 Days", "Custom Range");
         periodCombo.setValue("All Time");
         periodCombo.setStyle("-fx-background-color: #3a3a3a; -fx-text-fill: white;");
 
-        controlsBox.getChildren().addAll(periodLabel, periodCombo);
+        // Custom range pickers, only shown for "Custom Range"
+        DatePicker fromPicker = new DatePicker(LocalDate.now().minusMonths(1));
+        DatePicker toPicker = new DatePicker(LocalDate.now());
+        fromPicker.setPrefWidth(130);
+        toPicker.setPrefWidth(130);
+        Label toLabel = new Label("to");
+        toLabel.setStyle("-fx-text-fill: white;");
+        HBox customRangeBox = new HBox(10, fromPicker, toLabel, toPicker);
+        customRangeBox.setAlignment(Pos.CENTER_LEFT);
+        customRangeBox.setVisible(false);
+        customRangeBox.setManaged(false);
+
+        controlsBox.getChildren().addAll(periodLabel, periodCombo, customRangeBox);
 
         // P&L Chart
-        LineChart<String, Number> plChart = createProfitLossChart();
+        LineChart<Number, Number> plChart = createProfitLossChart();
+
+        // Underwater Chart
+        AreaChart<Number, Number> underwaterChart = createUnderwaterChart();
 
         // Win/Loss Ratio Chart
         BarChart<String, Number> winLossChart = createWinLossChart();
 
         VBox chartContainer = new VBox(20);
-        chartContainer.getChildren().addAll(plChart, winLossChart);
+        chartContainer.getChildren().addAll(plChart, underwaterChart, winLossChart);
 
         ScrollPane scrollPane = new ScrollPane(chartContainer);
         scrollPane.setFitToWidth(true);
@@ -2725,62 +3723,206 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         VBox.setVgrow(scrollPane, Priority.ALWAYS);
 
         // Update charts based on selected period
+        Runnable updateCharts = () -> {
+            LocalDate[] range = getPeriodRange(periodCombo.getValue(), fromPicker.getValue(), toPicker.getValue());
+            updateProfitLossChart(plChart, range[0], range[1]);
+            updateUnderwaterChart(underwaterChart, range[0], range[1]);
+            updateWinLossChart(winLossChart, range[0], range[1]);
+        };
+
         periodCombo.setOnAction(e -> {
-            // Implement period filtering logic here
-            // This would filter trades based on selected period and update charts
+            boolean custom = "Custom Range".equals(periodCombo.getValue());
+            customRangeBox.setVisible(custom);
+            customRangeBox.setManaged(custom);
+            updateCharts.run();
         });
+        fromPicker.valueProperty().addListener((obs, oldVal, newVal) -> updateCharts.run());
+        toPicker.valueProperty().addListener((obs, oldVal, newVal) -> updateCharts.run());
+
+        updateCharts.run();
 
         return mainBox;
     }
 
-    private LineChart<String, Number> createProfitLossChart() {
-        // Create axes
-        CategoryAxis xAxis = new CategoryAxis();
-        NumberAxis yAxis = new NumberAxis();
+    // Start and end date (inclusive) for a period choice; null means open-ended
+    private LocalDate[] getPeriodRange(String period, LocalDate customFrom, LocalDate customTo) {
+        LocalDate today = LocalDate.now();
+        switch (period) {
+            case "This Month":
+                return new LocalDate[]{today.withDayOfMonth(1), YearMonth.from(today).atEndOfMonth()};
+            case "This Week":
+                LocalDate monday = today.minusDays(today.getDayOfWeek().getValue() - 1);
+                return new LocalDate[]{monday, monday.plusDays(6)};
+            case "Last 30 Days":
+                return new LocalDate[]{today.minusDays(29), today};
+            case "Custom Range":
+                if (customFrom != null && customTo != null && customFrom.isAfter(customTo)) {
+                    return new LocalDate[]{customTo, customFrom};
+                }
+                return new LocalDate[]{customFrom, customTo};
+            default:
+                return new LocalDate[]{null, null};
+        }
+    }
+
+    private static final String PNL_PERIOD_KEY = "pnlPeriod";
+    private static final int DEFAULT_CHART_POINTS = 800;
+
+    // Axis whose values are epoch days, labelled as dates
+    private NumberAxis createDateAxis() {
+        NumberAxis xAxis = new NumberAxis();
         xAxis.setLabel("Date");
+        xAxis.setForceZeroInRange(false);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        xAxis.setTickLabelFormatter(new StringConverter<Number>() {
+            @Override
+            public String toString(Number epochDay) {
+                return formatter.format(LocalDate.ofEpochDay(Math.round(epochDay.doubleValue())));
+            }
+
+            @Override
+            public Number fromString(String text) {
+                return LocalDate.parse(text, formatter).toEpochDay();
+            }
+        });
+        return xAxis;
+    }
+
+    private AreaChart<Number, Number> createUnderwaterChart() {
+        NumberAxis xAxis = createDateAxis();
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Below Peak (%)");
+
+        AreaChart<Number, Number> areaChart = new AreaChart<>(xAxis, yAxis);
+        areaChart.setTitle("Underwater (drawdown from the equity peak)");
+        areaChart.setStyle("-fx-background-color: #333333;");
+        areaChart.setAnimated(false);
+        areaChart.setCreateSymbols(false);
+        areaChart.setLegendVisible(false);
+        areaChart.setPrefHeight(250);
+        return areaChart;
+    }
+
+    // Drawdowns are measured against the all-time peak, the period only picks which part is drawn
+    private void updateUnderwaterChart(AreaChart<Number, Number> areaChart, LocalDate from, LocalDate to) {
+        EquityCurve curve = dataManager.getEquityCurve();
+        int count = curve.getPointCount();
+        int first = from == null ? 0 : curve.indexOf(from.toEpochDay());
+        int last = to == null ? count : curve.indexOf(to.toEpochDay() + 1);
+        if (last <= first) {
+            areaChart.getData().clear();
+            return;
+        }
+
+        int width = areaChart.getWidth() > 0 ? (int) areaChart.getWidth() : DEFAULT_CHART_POINTS;
+        int[] points = Downsampler.lttb(last - first,
+                i -> curve.getEpochDay(first + i),
+                i -> curve.getUnderwater(first + i),
+                width);
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName("Underwater");
+        List<XYChart.Data<Number, Number>> data = new ArrayList<>(points.length);
+        for (int point : points) {
+            data.add(new XYChart.Data<>(curve.getEpochDay(first + point), curve.getUnderwater(first + point)));
+        }
+        series.getData().setAll(data);
+        areaChart.getData().setAll(Collections.singletonList(series));
+    }
+
+    private LineChart<Number, Number> createProfitLossChart() {
+        // Create axes, x values are epoch days
+        NumberAxis xAxis = createDateAxis();
+        NumberAxis yAxis = new NumberAxis();
         yAxis.setLabel("Profit/Loss ($)");
 
         // Create chart
-        LineChart<String, Number> lineChart = new LineChart<>(xAxis, yAxis);
-        lineChart.setTitle("Cumulative Profit/Loss");
+        LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
+        lineChart.setTitle("Cumulative Profit/Loss (scroll to zoom, double-click to reset)");
         lineChart.setStyle("-fx-background-color: #333333;");
         lineChart.setAnimated(false);
+        // One symbol node per point is what made large accounts slow to lay out
+        lineChart.setCreateSymbols(false);
+
+        // Zoom around the mouse position and re-sample the visible days at full resolution
+        lineChart.setOnScroll(e -> {
+            PnlTimeline.Range period = (PnlTimeline.Range) lineChart.getProperties().get(PNL_PERIOD_KEY);
+            if (period == null || period.size() < 2 || e.getDeltaY() == 0) {
+                return;
+            }
+            double lower = xAxis.getLowerBound();
+            double upper = xAxis.getUpperBound();
+            double pivot = xAxis.getValueForDisplay(xAxis.sceneToLocal(e.getSceneX(), e.getSceneY()).getX()).doubleValue();
+            pivot = Math.max(lower, Math.min(upper, pivot));
+            double factor = e.getDeltaY() > 0 ? 0.8 : 1.25;
+
+            double first = period.getEpochDay(0);
+            double last = period.getEpochDay(period.size() - 1);
+            double newLower = Math.max(first, pivot - (pivot - lower) * factor);
+            double newUpper = Math.min(last, pivot + (upper - pivot) * factor);
+            if (newUpper - newLower >= 1) {
+                showProfitLossRange(lineChart, period, newLower, newUpper);
+            }
+        });
+        lineChart.setOnMouseClicked(e -> {
+            PnlTimeline.Range period = (PnlTimeline.Range) lineChart.getProperties().get(PNL_PERIOD_KEY);
+            if (e.getClickCount() == 2 && period != null && period.size() > 0) {
+                showProfitLossRange(lineChart, period, period.getEpochDay(0), period.getEpochDay(period.size() - 1));
+            }
+        });
 
-        // Prepare data
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Cumulative P&L");
-
-        // Sort trades by date
-        List<Trade> sortedTrades = new ArrayList<>(dataManager.getTrades());
-        sortedTrades.sort(Comparator.comparing(Trade::getDate));
+        return lineChart;
+    }
 
-        // Calculate cumulative P&L
-        double cumulativePL = 0;
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private void updateProfitLossChart(LineChart<Number, Number> lineChart, LocalDate from, LocalDate to) {
+        // Trades in the period are already in date order, with running totals from prefix sums
+        PnlTimeline.Range period = dataManager.getPnlTimeline().range(from, to);
+        lineChart.getProperties().put(PNL_PERIOD_KEY, period);
 
-        for (Trade trade : sortedTrades) {
-            cumulativePL += trade.getReturns();
-            series.getData().add(new XYChart.Data<>(formatter.format(trade.getDate()), cumulativePL));
+        if (period.size() == 0) {
+            lineChart.getXAxis().setAutoRanging(true);
+            lineChart.getData().clear();
+            return;
         }
+        showProfitLossRange(lineChart, period, period.getEpochDay(0), period.getEpochDay(period.size() - 1));
+    }
 
-        lineChart.getData().add(series);
+    // Draws the part of the period between two epoch days, downsampled to about one point per pixel
+    private void showProfitLossRange(LineChart<Number, Number> lineChart, PnlTimeline.Range period,
+            double lower, double upper) {
+        NumberAxis xAxis = (NumberAxis) lineChart.getXAxis();
+        if (upper - lower < 1) {
+            upper = lower + 1;
+        }
+        xAxis.setAutoRanging(false);
+        xAxis.setLowerBound(lower);
+        xAxis.setUpperBound(upper);
+        xAxis.setTickUnit(Math.max(1, Math.ceil((upper - lower) / 8)));
+
+        // Visible trades plus one on each side so the line runs to the edges
+        int first = Math.max(0, period.indexOf((long) Math.floor(lower)) - 1);
+        int last = Math.min(period.size(), period.indexOf((long) Math.floor(upper) + 1) + 1);
+        int width = lineChart.getWidth() > 0 ? (int) lineChart.getWidth() : DEFAULT_CHART_POINTS;
+        int[] points = Downsampler.lttb(last - first,
+                i -> period.getEpochDay(first + i),
+                i -> period.getCumulative(first + i),
+                width);
 
-        // Apply custom styling
-        for (XYChart.Series<String, Number> s : lineChart.getData()) {
-            for (XYChart.Data<String, Number> data : s.getData()) {
-                Node node = data.getNode();
-                double value = data.getYValue().doubleValue();
-
-                // Change line color based on positive or negative value
-                if (value >= 0) {
-                    node.setStyle("-fx-stroke: #4caf50;");
-                } else {
-                    node.setStyle("-fx-stroke: #f44336;");
-                }
-            }
+        // Prepare data
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName("Cumulative P&L");
+        List<XYChart.Data<Number, Number>> data = new ArrayList<>(points.length);
+        for (int point : points) {
+            data.add(new XYChart.Data<>(period.getEpochDay(first + point), period.getCumulative(first + point)));
         }
+        series.getData().setAll(data);
 
-        return lineChart;
+        lineChart.getData().setAll(Collections.singletonList(series));
+
+        // Color the line by where the period ends up
+        Node line = series.getNode();
+        if (line != null) {
+            line.setStyle(period.getNetReturns() >= 0 ? "-fx-stroke: #4caf50;" : "-fx-stroke: #f44336;");
+        }
     }
 
     private BarChart<String, Number> createWinLossChart() {
@@ -2796,10 +3938,10 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         barChart.setStyle("-fx-background-color: #333333;");
         barChart.setAnimated(false);
 
-        // Group trades by date
-        Map<LocalDate, List<Trade>> tradesByDate = dataManager.getTrades().stream()
-                .collect(Collectors.groupingBy(Trade::getDate));
+        return barChart;
+    }
 
+    private void updateWinLossChart(BarChart<String, Number> barChart, LocalDate from, LocalDate to) {
         // Prepare data
         XYChart.Series<String, Number> winSeries = new XYChart.Series<>();
         winSeries.setName("Wins");
@@ -2807,29 +3949,16 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         XYChart.Series<String, Number> lossSeries = new XYChart.Series<>();
         lossSeries.setName("Losses");
 
-        // Sort dates
-        List<LocalDate> dates = new ArrayList<>(tradesByDate.keySet());
-        dates.sort(LocalDate::compareTo);
-
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd");
 
-        for (LocalDate date : dates) {
-            List<Trade> dayTrades = tradesByDate.get(date);
-
-            long wins = dayTrades.stream()
-                    .filter(t -> t.getStatus().equals("WIN"))
-                    .count();
-
-            long losses = dayTrades.stream()
-                    .filter(t -> t.getStatus().equals("LOSS"))
-                    .count();
-
-            String dateStr = formatter.format(date);
-            winSeries.getData().add(new XYChart.Data<>(dateStr, wins));
-            lossSeries.getData().add(new XYChart.Data<>(dateStr, losses));
+        // Days in the period come sorted from the date index with their counts
+        for (DateIndex.Day day : dataManager.getDateIndex().getDays(from, to).values()) {
+            String dateStr = formatter.format(day.getDate());
+            winSeries.getData().add(new XYChart.Data<>(dateStr, day.getWinningTrades()));
+            lossSeries.getData().add(new XYChart.Data<>(dateStr, day.getLosingTrades()));
         }
 
-        barChart.getData().addAll(winSeries, lossSeries);
+        barChart.getData().setAll(Arrays.asList(winSeries, lossSeries));
 
         // Apply custom styling
         for (XYChart.Series<String, Number> series : barChart.getData()) {
@@ -2843,8 +3972,6 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
                 }
             }
         }
-
-        return barChart;
     }
 
     
@@ -2922,10 +4049,9 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
         // How many days to leave blank at the start
         int dayOfWeek = firstDayOfMonth.getDayOfWeek().getValue() % 7; // 0 = Sunday, 6 = Saturday
         
-        // Group trades by date for display
-        Map<LocalDate, List<Trade>> tradesByDate = dataManager.getTrades().stream()
-            .filter(t -> YearMonth.from(t.getDate()).equals(yearMonth))
-            .collect(Collectors.groupingBy(Trade::getDate));
+        // Per-day totals for the month, straight from the date index
+        Map<Long, DateIndex.Day> tradesByDate = dataManager.getDateIndex()
+            .getDays(firstDayOfMonth, yearMonth.atEndOfMonth());
         
         // Generate calendar days
         int day = 1;
@@ -2947,10 +4073,10 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
                     LocalDate date = yearMonth.atDay(day);
                     
                     // Check for trades on this day
-                    if (tradesByDate.containsKey(date)) {
-                        List<Trade> dayTrades = tradesByDate.get(date);
-                        double totalReturns = dayTrades.stream().mapToDouble(Trade::getReturns).sum();
-                        int tradeCount = dayTrades.size();
+                    DateIndex.Day tradeDay = tradesByDate.get(date.toEpochDay());
+                    if (tradeDay != null) {
+                        double totalReturns = tradeDay.getNetReturns();
+                        int tradeCount = tradeDay.getTradeCount();
                         
                         // Set background color based on returns
                         if (totalReturns > 0) {
@@ -3047,10 +4173,9 @@ private void showItemNotesDialog(SetupEntryDetails item, String itemType) {
 private void showDayTrades(int year, int month, int day) {
     LocalDate date = LocalDate.of(year, month, day);
     
-    // Filter trades for selected date
-    List<Trade> dayTrades = dataManager.getTrades().stream()
-                          .filter(t -> t.getDate().equals(date))
-                          .collect(Collectors.toList());
+    // Look up the day in the date index
+    DateIndex.Day tradeDay = dataManager.getDateIndex().getDay(date);
+    List<Trade> dayTrades = dataManager.getDateIndex().getTrades(date);
     
     if (dayTrades.isEmpty()) {
         showAlertHere("No Trades", "No trades found for " + date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
@@ -3071,17 +4196,13 @@ private void showDayTrades(int year, int month, int day) {
     summaryBox.setPadding(new Insets(10));
     summaryBox.setStyle("-fx-background-color: #333333; -fx-background-radius: 5;");
     
-    // Calculate day statistics
-    int totalTrades = dayTrades.size();
-    long winningTrades = dayTrades.stream()
-                        .filter(t -> t.getStatus().equals("WIN"))
-                        .count();
-    long losingTrades = totalTrades - winningTrades;
+    // Day statistics are kept by the date index
+    int totalTrades = tradeDay.getTradeCount();
+    int winningTrades = tradeDay.getWinningTrades();
+    int losingTrades = totalTrades - winningTrades;
     double winRate = (double) winningTrades / totalTrades * 100;
     
-    double totalReturns = dayTrades.stream()
-                        .mapToDouble(Trade::getReturns)
-                        .sum();
+    double totalReturns = tradeDay.getNetReturns();
     
     VBox statsBox1 = new VBox(5);
     Label tradesLabel = new Label("Total Trades: " + totalTrades);
@@ -3393,175 +4514,217 @@ private void showDayTrades(int year, int month, int day) {
 }
 
     private void exportData() {
+        if (!checkTradesLoaded()) {
+            return;
+        }
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export Trade Data");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        FileChooser.ExtensionFilter csvFilter = new FileChooser.ExtensionFilter("CSV Files", "*.csv");
+        FileChooser.ExtensionFilter gzipFilter = new FileChooser.ExtensionFilter("Compressed CSV Files", "*.csv.gz");
+        fileChooser.getExtensionFilters().addAll(csvFilter, gzipFilter);
         File file = fileChooser.showSaveDialog(primaryStage);
 
         if (file != null) {
-            try (PrintWriter writer = new PrintWriter(file)) {
-                // Write CSV header
-                writer.println("DATE,SYMBOL,SIDE,ENTRY,EXIT,SIZE,RETURNS,STATUS,SETUP,ENTRY_TYPE,DURATION,NOTES,BALANCE");
-
-// Update the data writing
-for (Trade trade : dataManager.getTrades()) {
-    String notes = trade.getNotes() != null ? "\"" + trade.getNotes().replace("\"", "\"\"") + "\"" : "";
-    writer.println(String.format("%s,%s,%s,%.5f,%.5f,%.2f,%.2f,%s,%s,%s,%s,%s,%.2f",
-        trade.getDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-        trade.getSymbol(),
-        trade.getSide(),
-        trade.getEntry(),
-        trade.getExit(),
-        trade.getSize(),
-        trade.getReturns(),
-        trade.getStatus(),
-        trade.getSetup(),
-        trade.getEntryType(),
-        trade.getDuration(),
-        notes,
-        trade.getBalance()
-    ));
-}
-
-                showAlertHere("Export Successful", "Trade data has been exported to: " + file.getAbsolutePath());
-            } catch (Exception e) {
-                showAlertHere("Export Error", "Failed to export data: " + e.getMessage());
-                e.printStackTrace();
+            boolean gzip = file.getName().endsWith(".gz") || fileChooser.getSelectedExtensionFilter() == gzipFilter;
+            if (gzip && !file.getName().endsWith(".gz")) {
+                file = new File(file.getPath() + ".gz");
             }
+            File target = file;
+            // The snapshot is taken here; the rows are formatted and written in the background
+            TradeCsvExport task = new TradeCsvExport(new ArrayList<>(dataManager.getTrades()), target, gzip);
+            Stage progressDialog = createProgressDialog(task, "Exporting to " + target.getName());
+
+            task.setOnSucceeded(e -> {
+                progressDialog.close();
+                showAlertHere("Export Successful", "Trade data has been exported to: " + target.getAbsolutePath());
+            });
+            task.setOnCancelled(e -> progressDialog.close());
+            task.setOnFailed(e -> {
+                progressDialog.close();
+                Throwable error = task.getException();
+                showAlertHere("Export Error", "Failed to export data: " + error.getMessage());
+                error.printStackTrace();
+            });
+
+            Thread thread = new Thread(task, "csv-export");
+            thread.setDaemon(true);
+            thread.start();
+            progressDialog.show();
         }
     }
 
+    // Modal progress window for a background task, with a Cancel button
+    private Stage createProgressDialog(Task<?> task, String title) {
+        Stage progressDialog = new Stage();
+        progressDialog.initModality(Modality.WINDOW_MODAL);
+        progressDialog.initOwner(primaryStage);
+        progressDialog.setTitle(title);
+
+        Label messageLabel = new Label();
+        messageLabel.setStyle("-fx-text-fill: white;");
+        messageLabel.textProperty().bind(task.messageProperty());
+
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(350);
+        progressBar.progressProperty().bind(task.progressProperty());
+
+        Button cancelBtn = new Button("Cancel");
+        cancelBtn.setStyle("-fx-background-color: #555555; -fx-text-fill: white;");
+        cancelBtn.setOnAction(e -> task.cancel());
+        progressDialog.setOnCloseRequest(e -> task.cancel());
+
+        HBox buttonBox = new HBox(cancelBtn);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+
+        VBox content = new VBox(10, messageLabel, progressBar, buttonBox);
+        content.setPadding(new Insets(15));
+        content.setStyle("-fx-background-color: #2d2d2d;");
+        progressDialog.setScene(new Scene(content));
+        return progressDialog;
+    }
+
+private static final long PARALLEL_IMPORT_THRESHOLD = 32L << 20;
+
 private void importData() {
+    if (!checkTradesLoaded()) {
+        return;
+    }
     FileChooser fileChooser = new FileChooser();
     fileChooser.setTitle("Import Trade Data");
     fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
     File file = fileChooser.showOpenDialog(primaryStage);
     
     if (file != null) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            // Skip header
-            String line = reader.readLine();
-            
-            // Read trade data
-            List<Trade> importedTrades = new ArrayList<>();
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-                
-                if (parts.length >= 12) {
-                    try {
-                        LocalDate date = LocalDate.parse(parts[0], dateFormatter);
-                        String symbol = parts[1];
-                        String side = parts[2];
-                        double entry = Double.parseDouble(parts[3]);
-                        double exit = Double.parseDouble(parts[4]);
-                        int size = Integer.parseInt(parts[5]);
-                        double returns = Double.parseDouble(parts[6]);
-                        String status = parts[8];
-                        String setup = parts[9];
-                        String entryType = parts[10];
-                        String duration = parts[11];
-                        
-                        // Get balance if available (after notes in CSV)
-                        double balance = 0.0;
-                        if (parts.length > 13) {
-                            try {
-                                balance = Double.parseDouble(parts[13]);
-                            } catch (NumberFormatException e) {
-                                // If balance parsing fails, use default 0.0
-                            }
-                        }
-                        
-                        // Create the trade
-                        Trade trade = new Trade(status, date, duration, symbol, entry, exit, size, 
-                                              side, setup, entryType, returns, balance);
-                        
-                        // Notes (if available)
-                        if (parts.length > 12) {
-                            String notes = parts[12];
-                            if (notes.startsWith("\"") && notes.endsWith("\"")) {
-                                notes = notes.substring(1, notes.length() - 1).replace("\"\"", "\"");
-                            }
-                            trade.setNotes(notes);
-                        }
-                        
-                        importedTrades.add(trade);
-                    } catch (DateTimeParseException | NumberFormatException e) {
-                        // Skip invalid lines
-                        System.err.println("Skipping invalid line: " + line);
-                    }
-                }
-            }
-            
-            if (!importedTrades.isEmpty()) {
-                // Ask user if they want to replace or append
-                Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
-                alert.setTitle("Import Trades");
-                alert.setHeaderText("Import Options");
-                alert.setContentText("Do you want to replace existing trades or append imported trades?");
-                
-                ButtonType replaceButton = new ButtonType("Replace");
-                ButtonType appendButton = new ButtonType("Append");
-                ButtonType cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
-                
-                alert.getButtonTypes().setAll(replaceButton, appendButton, cancelButton);
-                
-                // Apply custom styling to the dialog
-                DialogPane dialogPane = alert.getDialogPane();
-                dialogPane.setStyle("-fx-background-color: #2d2d2d;");
-                dialogPane.lookup(".content.label").setStyle("-fx-text-fill: white;");
-                dialogPane.lookup(".header-panel").setStyle("-fx-background-color: #333333;");
-                dialogPane.lookup(".header-panel .label").setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
-                
-                Optional<ButtonType> result = alert.showAndWait();
-                
-                if (result.isPresent()) {
-                    if (result.get() == replaceButton) {
-                        dataManager.getTrades().clear();
-                        dataManager.getTrades().addAll(importedTrades);
-                        dataManager.saveTrades();
-                        this.showAlertHere("Import Successful", "Imported " + importedTrades.size() + " trades, replacing existing trades.");
-                    } else if (result.get() == appendButton) {
-                        dataManager.getTrades().addAll(importedTrades);
-                        dataManager.saveTrades();
-                        this.showAlertHere("Import Successful", "Appended " + importedTrades.size() + " imported trades.");
-                    }
-                }
-            } else {
-                // Create alert directly if showAlert method isn't accessible
-                Alert alert = new Alert(Alert.AlertType.WARNING);
-                alert.setTitle("Import Warning");
-                alert.setHeaderText(null);
-                alert.setContentText("No valid trades found in the import file.");
-                
-                // Style the dialog
-                DialogPane dialogPane = alert.getDialogPane();
-                dialogPane.setStyle("-fx-background-color: #2d2d2d;");
-                dialogPane.lookupAll(".label").forEach(node -> {
-                    ((Label)node).setStyle("-fx-text-fill: white;");
-                });
-                
-                alert.showAndWait();
-            }
-        } catch (Exception e) {
-            // Handle general file reading errors
-            Alert alert = new Alert(Alert.AlertType.ERROR);
-            alert.setTitle("Import Error");
-            alert.setHeaderText(null);
-            alert.setContentText("Failed to import data: " + e.getMessage());
-            
-            // Style the dialog
-            DialogPane dialogPane = alert.getDialogPane();
-            dialogPane.setStyle("-fx-background-color: #2d2d2d;");
-            dialogPane.lookupAll(".label").forEach(node -> {
-                ((Label)node).setStyle("-fx-text-fill: white;");
-            });
-            
-            alert.showAndWait();
-            e.printStackTrace();
+        // Trades are streamed in while the file is read, so ask how to import them up front
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Import Trades");
+        alert.setHeaderText("Import Options");
+        
+        ButtonType replaceButton = new ButtonType("Replace");
+        ButtonType appendButton = new ButtonType("Append");
+        ButtonType cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
+        
+        alert.getButtonTypes().setAll(replaceButton, appendButton, cancelButton);
+        
+        Label questionLabel = new Label("Do you want to replace existing trades or append imported trades?");
+        questionLabel.setStyle("-fx-text-fill: white;");
+        // Parsing in parallel pays off once a file is tens of megabytes
+        CheckBox parallelCheck = new CheckBox("Parse in parallel (large files)");
+        parallelCheck.setStyle("-fx-text-fill: white;");
+        parallelCheck.setSelected(file.length() >= PARALLEL_IMPORT_THRESHOLD);
+        VBox content = new VBox(10, questionLabel, parallelCheck);
+        
+        // Apply custom styling to the dialog
+        DialogPane dialogPane = alert.getDialogPane();
+        dialogPane.setContent(content);
+        dialogPane.setStyle("-fx-background-color: #2d2d2d;");
+        dialogPane.lookup(".header-panel").setStyle("-fx-background-color: #333333;");
+        dialogPane.lookup(".header-panel .label").setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
+        
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isPresent() && (result.get() == replaceButton || result.get() == appendButton)) {
+            runImport(file, result.get() == replaceButton, parallelCheck.isSelected());
+        }
+    }
+}
+
+// Nothing changes in the journal until the whole file was read and, for an append, the duplicate check confirmed
+private void runImport(File file, boolean replace, boolean parallel) {
+    List<Trade> imported = new ArrayList<>();
+    DataManager target = dataManager;
+    TradeCsvImport task = new TradeCsvImport(file, parallel, imported::addAll);
+    
+    Stage progressDialog = createProgressDialog(task, "Importing " + file.getName());
+    
+    task.setOnSucceeded(e -> {
+        progressDialog.close();
+        TradeCsvImport.Summary summary = task.getValue();
+        if (summary.getImported() == 0) {
+            showAlertHere("Import Warning", "No valid trades found in the import file.");
+            return;
+        }
+        String skipped = summary.getSkipped() > 0 ? "\nSkipped " + summary.getSkipped() + " invalid rows." : "";
+        if (replace) {
+            target.replaceTrades(imported);
+            showAlertHere("Import Successful", "Imported " + summary.getImported() + " trades, replacing existing trades."
+                    + skipped + "\nRead " + summary.describe() + ".");
+        } else {
+            appendImported(target, imported, skipped + "\nRead " + summary.describe() + ".");
+        }
+    });
+    task.setOnCancelled(e -> {
+        progressDialog.close();
+        showAlertHere("Import Cancelled", "Import cancelled, existing trades were left unchanged.");
+    });
+    task.setOnFailed(e -> {
+        progressDialog.close();
+        Throwable error = task.getException();
+        error.printStackTrace();
+        showAlertHere("Import Error", "Failed to import data: " + error.getMessage());
+    });
+    
+    Thread thread = new Thread(task, "csv-import");
+    thread.setDaemon(true);
+    thread.start();
+    progressDialog.show();
+}
+
+// Sorts the rows into new, duplicate and conflicting against the journal and lets the user decide
+private void appendImported(DataManager target, List<Trade> imported, String details) {
+    TradeFingerprints.Classification classification = target.getFingerprints().classify(imported);
+    int fresh = classification.getNew().size();
+    int duplicates = classification.getDuplicates().size();
+    int conflicts = classification.getConflicts().size();
+    
+    if (fresh == 0 && conflicts == 0) {
+        showAlertHere("Import", "All " + duplicates + " imported trades are already in the journal; nothing was added.");
+        return;
+    }
+    
+    Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+    alert.setTitle("Import Trades");
+    alert.setHeaderText("Import Summary");
+    alert.setContentText("New trades: " + fresh
+            + "\nDuplicates (will be skipped): " + duplicates
+            + "\nConflicting (same trade, different details): " + conflicts
+            + details);
+    
+    ButtonType addButton = new ButtonType(conflicts > 0 ? "Add New Only" : "Add New");
+    ButtonType mergeButton = new ButtonType("Add New & Update Conflicts");
+    ButtonType cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
+    if (conflicts > 0) {
+        alert.getButtonTypes().setAll(mergeButton, addButton, cancelButton);
+    } else {
+        alert.getButtonTypes().setAll(addButton, cancelButton);
+    }
+    
+    // Apply custom styling to the dialog
+    DialogPane dialogPane = alert.getDialogPane();
+    dialogPane.setStyle("-fx-background-color: #2d2d2d;");
+    dialogPane.lookup(".content.label").setStyle("-fx-text-fill: white;");
+    dialogPane.lookup(".header-panel").setStyle("-fx-background-color: #333333;");
+    dialogPane.lookup(".header-panel .label").setStyle("-fx-text-fill: white; -fx-font-weight: bold;");
+    
+    Optional<ButtonType> result = alert.showAndWait();
+    if (!result.isPresent() || result.get() == cancelButton) {
+        return;
+    }
+    if (fresh > 0) {
+        target.addTrades(classification.getNew());
+    }
+    int updated = 0;
+    if (result.get() == mergeButton) {
+        List<Trade> changed = new ArrayList<>();
+        for (Trade[] conflict : classification.getConflicts()) {
+            TradeFingerprints.merge(conflict[0], conflict[1]);
+            changed.add(conflict[1]);
         }
+        target.updateTrades(changed);
+        updated = changed.size();
     }
+    showAlertHere("Import Successful", "Appended " + fresh + " imported trades."
+            + (updated > 0 ? "\nUpdated " + updated + " existing trades." : "")
+            + (duplicates > 0 ? "\nSkipped " + duplicates + " duplicates." : ""));
 }
 
    
@@ -3569,9 +4732,15 @@ private void importData() {
     @Override
     public void stop() {
         // Save data before closing the application
-        if (dataManager != null) {
-            dataManager.saveData();
+        if (dataManagers != null) {
+            dataManagers.closeAll();
+        }
+        if (accountManager != null) {
+            accountManager.saveAccounts();
         }
+        // Nothing may still be queued when the JVM exits
+        persistenceQueue.flush();
+        System.out.println("Persistence: " + persistenceQueue.describeMetrics());
     }
 
     public static void main(String[] args) {